@@ -0,0 +1,112 @@
+import java.util.stream.Stream;
+
+import jmh.Marketplace;
+
+/** Binds the benchmark interface to DatabaseManager; see jmh.Marketplace. */
+public class MarketplaceBinding implements Marketplace {
+
+    private DatabaseManager db;
+
+    @Override
+    public void open(String url, int poolSize, String profile) {
+        db = new DatabaseManager(url, poolSize, PragmaProfile.named(profile));
+    }
+
+    @Override
+    public void generate(long transactions, long seed) {
+        DataGenerator generator = new DataGenerator(seed, DataGenerator.Scale.forTransactions(transactions));
+        if (db.generateData(generator) == null) {
+            throw new IllegalStateException("Could not generate " + transactions + " transactions");
+        }
+    }
+
+    @Override
+    public String[] categories() {
+        return DataGenerator.CATEGORIES.clone();
+    }
+
+    @Override
+    public void addUser(String userType, String username, String email, String password) {
+        db.addUser(userType, username, email, password);
+    }
+
+    @Override
+    public void addSeller(String sellerName, String contactInfo) {
+        db.addSeller(sellerName, contactInfo);
+    }
+
+    @Override
+    public void addGame(String gameName, int sellerID, String category, double price, String developer,
+                        int yearPublished) {
+        db.addGame(gameName, sellerID, category, price, developer, yearPublished);
+    }
+
+    @Override
+    public void addTransaction(int userID, int gameID, String purchaseDate, double totalAmount) {
+        db.addTransaction(userID, gameID, purchaseDate, totalAmount);
+    }
+
+    @Override
+    public boolean purchaseGame(int userID, int gameID) {
+        try {
+            return db.purchaseGame(userID, gameID) != null;
+        } catch (DatabaseException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void updateUserEmail(int userID, String newEmail) {
+        db.updateUserEmail(userID, newEmail);
+    }
+
+    @Override
+    public void deleteUser(int userID) {
+        db.deleteUser(userID);
+    }
+
+    @Override
+    public Object getUsersSortedByUsername(int pageSize) {
+        return db.getUsersSortedByUsername(null, pageSize);
+    }
+
+    @Override
+    public Stream<?> streamGamesByCategory(String category) {
+        return db.streamGamesByCategory(category);
+    }
+
+    @Override
+    public Stream<?> streamSellersWithGames() {
+        return db.streamSellersWithGames();
+    }
+
+    @Override
+    public Stream<?> streamTotalSpendingPerUser() {
+        return db.streamTotalSpendingPerUser();
+    }
+
+    @Override
+    public Stream<?> streamUsersAboveAverageSpending() {
+        return db.streamUsersAboveAverageSpending();
+    }
+
+    @Override
+    public Object getAllUsersWithTransactions(int pageSize) {
+        return db.getAllUsersWithTransactions(null, pageSize);
+    }
+
+    @Override
+    public Stream<?> streamAllUsersWithTransactions() {
+        return db.streamAllUsersWithTransactions();
+    }
+
+    @Override
+    public Stream<?> streamAllSellersWithGames() {
+        return db.streamAllSellersWithGames();
+    }
+
+    @Override
+    public void close() {
+        db.close();
+    }
+}
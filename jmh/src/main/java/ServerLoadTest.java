@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for MarketplaceServer.
+ *
+ * Each simulated client is a virtual thread that sends a request, waits for the
+ * response and immediately sends the next one. A configurable fraction of requests
+ * are writes (new transactions, plus the occasional new user); the rest are spread
+ * over the read endpoints. After a warm-up period, every response is timed into a
+ * LatencyHistogram per kind, and requests/sec with p50/p99/p99.9/max are reported.
+ *
+ * Usage (with the server running, e.g. java ... Main --server):
+ *   java -cp jmh/target/benchmarks.jar ServerLoadTest \
+ *        --url=http://localhost:8080 --clients=64 --seconds=10 --writeRatio=0.1
+ *
+ * --users and --games bound the IDs used in requests (defaults match the sample data);
+ * --categories is a comma-separated list of categories to browse.
+ */
+public class ServerLoadTest {
+
+    private enum Kind { READ, WRITE }
+
+    private final URI base;
+    private final int clients;
+    private final double warmupSeconds;
+    private final double measureSeconds;
+    private final double writeRatio;
+    private final int users;
+    private final int games;
+    private final String[] categories;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final Map<Kind, LatencyHistogram> latency = new LinkedHashMap<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger uniqueCounter = new AtomicInteger();
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private ServerLoadTest(Map<String, String> options) {
+        this.base = URI.create(options.getOrDefault("url", "http://localhost:8080"));
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        this.warmupSeconds = Double.parseDouble(options.getOrDefault("warmup", "2"));
+        this.measureSeconds = Double.parseDouble(options.getOrDefault("seconds", "10"));
+        this.writeRatio = Double.parseDouble(options.getOrDefault("writeRatio", "0.1"));
+        this.users = Integer.parseInt(options.getOrDefault("users", "2"));
+        this.games = Integer.parseInt(options.getOrDefault("games", "2"));
+        this.categories = options.getOrDefault("categories", "Action,FPS").split(",");
+        for (Kind kind : Kind.values()) {
+            latency.put(kind, new LatencyHistogram());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unrecognised argument " + arg + " (expected --name=value)");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new ServerLoadTest(options).run();
+    }
+
+    private void run() throws InterruptedException {
+        System.out.printf("Load testing %s with %d clients (%.0f%% writes), %.0f s warm-up + %.0f s measured%n",
+                base, clients, writeRatio * 100, warmupSeconds, measureSeconds);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            long seed = 42 + i;
+            threads.add(Thread.ofVirtual().name("load-client-" + i).start(() -> clientLoop(new SplittableRandom(seed))));
+        }
+        Thread.sleep((long) (warmupSeconds * 1000));
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep((long) (measureSeconds * 1000));
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report(elapsed);
+    }
+
+    private void clientLoop(SplittableRandom random) {
+        while (!stopped) {
+            Kind kind = random.nextDouble() < writeRatio ? Kind.WRITE : Kind.READ;
+            HttpRequest request = kind == Kind.WRITE ? nextWrite(random) : nextRead(random);
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                // A 404 for a game ID outside the table is a valid answer, not a failure.
+                ok = response.statusCode() < 400 || response.statusCode() == 404;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (measuring) {
+                latency.get(kind).record(System.nanoTime() - start);
+                if (!ok) {
+                    errors.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private HttpRequest nextRead(SplittableRandom random) {
+        return switch (random.nextInt(6)) {
+            case 0 -> get("/games?category=" + encode(categories[random.nextInt(categories.length)]));
+            case 1 -> get("/games/" + (1 + random.nextInt(games)));
+            case 2 -> get("/users?pageSize=20");
+            case 3 -> get("/users/transactions?pageSize=20");
+            case 4 -> get("/spending?page=0&pageSize=20");
+            default -> get("/spending/above-average?page=0&pageSize=20");
+        };
+    }
+
+    private HttpRequest nextWrite(SplittableRandom random) {
+        if (random.nextInt(10) == 0) {
+            String name = "load_user_" + ProcessHandle.current().pid() + "_" + uniqueCounter.incrementAndGet();
+            return post("/users", "userType=Guest&username=" + name + "&email=" + name + "%40example.com&password=password");
+        }
+        return post("/transactions", "userID=" + (1 + random.nextInt(users)) + "&gameID=" + (1 + random.nextInt(games)) +
+                                     "&purchaseDate=2024-01-01&totalAmount=" + (1 + random.nextInt(60)) + ".99");
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private HttpRequest post(String path, String form) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private void report(double seconds) {
+        long total = 0;
+        System.out.printf("%n%-8s %10s %10s %9s %9s %9s %9s%n", "kind", "requests", "req/s", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms");
+        for (Map.Entry<Kind, LatencyHistogram> entry : latency.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            total += h.getCount();
+            System.out.printf("%-8s %10d %10.1f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(), h.getCount(),
+                    h.getCount() / seconds, h.getPercentileNanos(50) / 1e6, h.getPercentileNanos(99) / 1e6,
+                    h.getPercentileNanos(99.9) / 1e6, h.getMaxNanos() / 1e6);
+        }
+        System.out.printf("%nTotal: %d requests in %.1f s = %.1f req/s, %d errors%n", total, seconds, total / seconds,
+                errors.get());
+    }
+}
@@ -0,0 +1,348 @@
+package jmh;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for every DatabaseManager operation (called through Marketplace).
+ *
+ * Each trial starts from a copy of a seeded fixture database of the requested size
+ * (generated once per scale by DataGenerator with a fixed seed and kept next to the
+ * working directory as bench-fixture-N.db), so every benchmark sees the same rows.
+ * Throughput and SampleTime modes are both measured; SampleTime reports the p50/p90/
+ * p99/p99.9/max latency percentiles. The "mixed" group runs writer and reader threads
+ * side by side, and the "checkout" group runs concurrent buyers and checks afterwards
+ * that no GamesSold increment was lost.
+ *
+ * Usage (after mvn -B package in the project root):
+ *   java -jar jmh/target/benchmarks.jar -p transactions=10000,1000000 -rf json -rff bench-results.json
+ *
+ * Thread counts of the groups can be changed with -tg, e.g. -tg 2,8 for two writers
+ * and eight readers in "mixed".
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseBenchmark {
+
+    /** The marketplace over a fresh copy of the seeded fixture, with its console output suppressed. */
+    @State(Scope.Benchmark)
+    public static class Fixture {
+
+        /** Transactions to seed (10k to 10M); users, sellers and games scale with it. */
+        @Param({ "10000" })
+        public long transactions;
+
+        @Param({ "throughput" })
+        public String profile;
+
+        final AtomicInteger uniqueCounter = new AtomicInteger();
+        Path dbFile;
+        Marketplace db;
+        String[] categories;
+        int firstUserID;
+        int lastUserID;
+        int firstSellerID;
+        int lastSellerID;
+        int firstGameID;
+        int lastGameID;
+        private PrintStream console;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            // Full scans are slow by design here; keep the slow-query log from flooding the output.
+            if (System.getProperty("db.slowQueryMs") == null) {
+                System.setProperty("db.slowQueryMs", "0");
+            }
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+            Path template = Path.of("bench-fixture-" + transactions + ".db");
+            if (!Files.exists(template)) {
+                seed(template);
+            }
+            dbFile = Path.of("bench.db");
+            deleteDatabase(dbFile);
+            Files.copy(template, dbFile, StandardCopyOption.REPLACE_EXISTING);
+            db = load();
+            db.open("jdbc:sqlite:" + dbFile, 8, profile);
+            categories = db.categories();
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(
+                         "SELECT (SELECT MIN(UserID) FROM users), (SELECT MAX(UserID) FROM users), " +
+                         "(SELECT MIN(SellerID) FROM sellerinfo), (SELECT MAX(SellerID) FROM sellerinfo), " +
+                         "(SELECT MIN(GameID) FROM gamesinfo), (SELECT MAX(GameID) FROM gamesinfo);")) {
+                rs.next();
+                firstUserID = rs.getInt(1);
+                lastUserID = rs.getInt(2);
+                firstSellerID = rs.getInt(3);
+                lastSellerID = rs.getInt(4);
+                firstGameID = rs.getInt(5);
+                lastGameID = rs.getInt(6);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            try {
+                db.close();
+            } finally {
+                System.setOut(console);
+            }
+        }
+
+        private void seed(Path template) throws Exception {
+            Path partial = Path.of(template + ".tmp");
+            deleteDatabase(partial);
+            try (Marketplace seeding = load()) {
+                seeding.open("jdbc:sqlite:" + partial, 2, profile);
+                seeding.generate(transactions, 42);
+            }
+            // Fold the WAL into the file so the template is a single self-contained copy.
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + partial);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = DELETE;");
+            }
+            Files.move(partial, template, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static Marketplace load() {
+            return ServiceLoader.load(Marketplace.class).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No Marketplace implementation on the classpath"));
+        }
+
+        private static void deleteDatabase(Path file) throws Exception {
+            for (String suffix : List.of("", "-wal", "-shm", "-journal")) {
+                Files.deleteIfExists(Path.of(file + suffix));
+            }
+        }
+
+        /** Random lookups stay in the lower half of the users; deleteUser only removes users it created. */
+        int randomUser() {
+            return firstUserID + ThreadLocalRandom.current().nextInt(Math.max(1, (lastUserID - firstUserID + 1) / 2));
+        }
+
+        int randomSeller() {
+            return ThreadLocalRandom.current().nextInt(firstSellerID, lastSellerID + 1);
+        }
+
+        int randomGame() {
+            return ThreadLocalRandom.current().nextInt(firstGameID, lastGameID + 1);
+        }
+
+        String randomCategory() {
+            return categories[ThreadLocalRandom.current().nextInt(categories.length)];
+        }
+
+        long totalGamesSold() throws SQLException {
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(GamesSold), 0) FROM sellerinfo;")) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * A user with a handful of purchases, created before each deleteUser call (outside the
+     * measured time) so every call removes a real row and cascades its transactions.
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+
+        int userID;
+
+        @Setup(Level.Invocation)
+        public void setUp(Fixture fixture) throws SQLException {
+            int n = fixture.uniqueCounter.incrementAndGet();
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + fixture.dbFile);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 5000;");
+                stmt.executeUpdate("INSERT INTO users (UserType, Username, Email, Password) VALUES " +
+                        "('Guest', 'delete_me_" + n + "', 'delete_me_" + n + "@example.com', 'password');");
+                try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid();")) {
+                    rs.next();
+                    userID = rs.getInt(1);
+                }
+                for (int i = 0; i < 5; i++) {
+                    stmt.executeUpdate("INSERT INTO playstoretransaction (UserID, GameID, PurchaseDate, TotalAmount) " +
+                            "VALUES (" + userID + ", " + fixture.randomGame() + ", '2024-06-01', 9.99);");
+                }
+            }
+        }
+    }
+
+    /** Counts purchases so the GamesSold totals can be checked once the checkout group finishes. */
+    @State(Scope.Benchmark)
+    public static class Checkout {
+
+        final AtomicLong purchases = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        private long soldBefore;
+
+        @Setup(Level.Trial)
+        public void setUp(Fixture fixture) throws SQLException {
+            soldBefore = fixture.totalGamesSold();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(Fixture fixture) throws SQLException {
+            long grew = fixture.totalGamesSold() - soldBefore;
+            System.err.printf("%n%d purchases, %d failed; GamesSold grew by %d (%s)%n", purchases.get(),
+                    failures.get(), grew, grew == purchases.get() ? "no lost updates" : "MISMATCH");
+        }
+    }
+
+    // ---- CRUD -----------------------------------------------------------------------------
+
+    @Benchmark
+    public void addUser(Fixture f) {
+        int n = f.uniqueCounter.incrementAndGet();
+        f.db.addUser("Guest", "new_user_" + n, "new_user_" + n + "@example.com", "password");
+    }
+
+    @Benchmark
+    public void addSeller(Fixture f) {
+        f.db.addSeller("new_seller_" + f.uniqueCounter.incrementAndGet(), "555-0000");
+    }
+
+    @Benchmark
+    public void addGame(Fixture f) {
+        f.db.addGame("new_game_" + f.uniqueCounter.incrementAndGet(), f.randomSeller(), f.randomCategory(), 19.99,
+                "bench_dev", 2024);
+    }
+
+    @Benchmark
+    public void addTransaction(Fixture f) {
+        f.db.addTransaction(f.randomUser(), f.randomGame(), "2024-06-01", 9.99);
+    }
+
+    @Benchmark
+    public boolean purchaseGame(Fixture f) {
+        return f.db.purchaseGame(f.randomUser(), f.randomGame());
+    }
+
+    @Benchmark
+    public void updateUserEmail(Fixture f) {
+        f.db.updateUserEmail(f.randomUser(), "changed_" + f.uniqueCounter.incrementAndGet() + "@example.com");
+    }
+
+    @Benchmark
+    public void deleteUser(Fixture f, DeleteTarget target) {
+        f.db.deleteUser(target.userID);
+    }
+
+    // ---- Queries --------------------------------------------------------------------------
+
+    @Benchmark
+    public Object getUsersSortedByUsernamePage(Fixture f) {
+        return f.db.getUsersSortedByUsername(50);
+    }
+
+    @Benchmark
+    public void getGamesByCategory(Fixture f, Blackhole bh) {
+        drain(f.db.streamGamesByCategory(f.randomCategory()), bh);
+    }
+
+    @Benchmark
+    public void getSellersWithGames(Fixture f, Blackhole bh) {
+        drain(f.db.streamSellersWithGames(), bh);
+    }
+
+    @Benchmark
+    public void getTotalSpendingPerUser(Fixture f, Blackhole bh) {
+        drain(f.db.streamTotalSpendingPerUser(), bh);
+    }
+
+    @Benchmark
+    public void getUsersAboveAverageSpending(Fixture f, Blackhole bh) {
+        drain(f.db.streamUsersAboveAverageSpending(), bh);
+    }
+
+    @Benchmark
+    public Object getAllUsersWithTransactionsPage(Fixture f) {
+        return f.db.getAllUsersWithTransactions(50);
+    }
+
+    @Benchmark
+    public void getAllUsersWithTransactionsFull(Fixture f, Blackhole bh) {
+        drain(f.db.streamAllUsersWithTransactions(), bh);
+    }
+
+    @Benchmark
+    public void getAllSellersWithGames(Fixture f, Blackhole bh) {
+        drain(f.db.streamAllSellersWithGames(), bh);
+    }
+
+    // ---- Concurrent workloads -------------------------------------------------------------
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWriter(Fixture f) {
+        f.db.addTransaction(f.randomUser(), f.randomGame(), "2024-06-01", 9.99);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public void mixedReader(Fixture f, Blackhole bh) {
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            drain(f.db.streamGamesByCategory(f.randomCategory()), bh);
+        } else {
+            bh.consume(f.db.getAllUsersWithTransactions(50));
+        }
+    }
+
+    @Benchmark
+    @Group("checkout")
+    @GroupThreads(8)
+    public void checkoutBuyer(Fixture f, Checkout checkout) {
+        if (f.db.purchaseGame(f.randomUser(), f.randomGame())) {
+            checkout.purchases.incrementAndGet();
+        } else {
+            checkout.failures.incrementAndGet();
+        }
+    }
+
+    private static void drain(Stream<?> rows, Blackhole bh) {
+        try (rows) {
+            rows.forEach(bh::consume);
+        }
+    }
+}
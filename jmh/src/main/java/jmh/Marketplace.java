@@ -0,0 +1,56 @@
+package jmh;
+
+import java.util.stream.Stream;
+
+/**
+ * The DatabaseManager operations under benchmark.
+ *
+ * JMH refuses benchmark classes in the default package, and classes in a named package
+ * cannot refer to the application's default-package classes, so the benchmarks call
+ * the application through this interface. The implementation (MarketplaceBinding, in
+ * the default package) is found with ServiceLoader.
+ */
+public interface Marketplace extends AutoCloseable {
+
+    /** Opens the database at url with poolSize read connections and the named PRAGMA profile. */
+    void open(String url, int poolSize, String profile);
+
+    /** Appends DataGenerator's synthetic dataset for the given transaction count and seed. */
+    void generate(long transactions, long seed);
+
+    String[] categories();
+
+    void addUser(String userType, String username, String email, String password);
+
+    void addSeller(String sellerName, String contactInfo);
+
+    void addGame(String gameName, int sellerID, String category, double price, String developer, int yearPublished);
+
+    void addTransaction(int userID, int gameID, String purchaseDate, double totalAmount);
+
+    /** Returns false if the purchase could not be committed. */
+    boolean purchaseGame(int userID, int gameID);
+
+    void updateUserEmail(int userID, String newEmail);
+
+    void deleteUser(int userID);
+
+    Object getUsersSortedByUsername(int pageSize);
+
+    Stream<?> streamGamesByCategory(String category);
+
+    Stream<?> streamSellersWithGames();
+
+    Stream<?> streamTotalSpendingPerUser();
+
+    Stream<?> streamUsersAboveAverageSpending();
+
+    Object getAllUsersWithTransactions(int pageSize);
+
+    Stream<?> streamAllUsersWithTransactions();
+
+    Stream<?> streamAllSellersWithGames();
+
+    @Override
+    void close();
+}
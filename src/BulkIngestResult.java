@@ -0,0 +1,23 @@
+/**
+ * Outcome of a bulk import (addTransactions or a file import).
+ *
+ * {@code nextOffset} is the position in the input of the first row that was not
+ * committed; pass it back as {@code resumeFrom} to continue after a failure.
+ */
+public record BulkIngestResult(long rowsCommitted, long nextOffset, long elapsedNanos, String error) {
+
+    public boolean succeeded() {
+        return error == null;
+    }
+
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsCommitted * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows in %.2f s (%.0f rows/sec)%s",
+                rowsCommitted, elapsedNanos / 1_000_000_000.0, rowsPerSecond(),
+                succeeded() ? "" : " | stopped at offset " + nextOffset + ": " + error);
+    }
+}
@@ -0,0 +1,549 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Fixed-size pool of long-lived SQLite connections.
+ *
+ * Connections are handed out as proxies whose close() returns them to the pool,
+ * so callers keep using try-with-resources exactly as with DriverManager.
+ * Idle connections are reused most-recently-used first, validated before reuse
+ * once they have sat idle for a while, and evicted after the idle timeout
+ * (one connection is always kept open so the database file stays warm).
+ *
+ * A connection initializer runs once on every newly opened physical connection,
+ * which is where per-connection PRAGMAs belong. Driver properties (e.g. SQLite's
+ * open_mode) are passed through to DriverManager when connections are opened.
+ * Session state that can change while the pool is running (e.g. which database
+ * files are ATTACHed) is kept current by an optional session sync, re-run on a
+ * connection as it is borrowed whenever its version has moved on.
+ *
+ * Each physical connection also keeps an LRU cache of compiled PreparedStatements
+ * keyed by SQL text. prepareStatement(sql) on a pooled connection returns the cached
+ * statement when there is one, and closing it only clears its parameters.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Setup run on each new physical connection before it is first handed out. */
+    @FunctionalInterface
+    public interface Initializer {
+        void init(Connection conn) throws SQLException;
+    }
+
+    /** A session sync and the version of the shared state it brings connections up to. */
+    private record SessionSync(LongSupplier version, Initializer sync) {
+    }
+
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 5_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int MIN_IDLE = 1;
+
+    private final String name;
+    private final String url;
+    private final Properties properties;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+    private final Initializer initializer;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+    private volatile SessionSync sessionSync;
+
+    // Metrics
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong failedHealthChecks = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    public ConnectionPool(String name, String url, Properties properties, int maxSize, long idleTimeoutMillis,
+                          long acquireTimeoutMillis, int statementCacheSize, Initializer initializer) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.name = name;
+        this.url = url;
+        this.properties = properties;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.initializer = initializer;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sqlite-pool-evictor-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers setup that must follow shared state which can change while connections are
+     * open. Whenever {@code version} differs from the one a connection was last synced to,
+     * {@code sync} runs on it as it is borrowed, after its cached statements are closed
+     * (they may refer to the old state). A connection whose sync fails is discarded.
+     */
+    public void setSessionSync(LongSupplier version, Initializer sync) {
+        this.sessionSync = new SessionSync(version, sync);
+    }
+
+    /**
+     * Brings every open connection up to the current session version. Waits, up to the
+     * acquire timeout, until no connection is borrowed (new borrowers queue behind it),
+     * then runs the session sync on each idle one. Call this after the version moves on
+     * and before removing anything older sessions still refer to, such as the file of an
+     * ATTACHed database. A connection whose sync fails is discarded and the error thrown.
+     */
+    public void syncSessions() throws SQLException {
+        try {
+            if (!permits.tryAcquire(maxSize, acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for " + name +
+                        " connections to be returned");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for pooled connections", e);
+        }
+        List<PooledConnection> synced = new ArrayList<>();
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                syncSession(pooled);
+                synced.add(pooled);
+            }
+        } finally {
+            // Back in the same most-recently-used-first order.
+            for (int i = synced.size() - 1; i >= 0; i--) {
+                idle.offerFirst(synced.get(i));
+            }
+            permits.release(maxSize);
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquire timeout if all are in use.
+     * Closing the returned connection gives it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a pooled connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeHealthyIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            syncSession(pooled);
+            peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeHealthyIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.isHealthy()) {
+                return pooled;
+            }
+            failedHealthChecks.incrementAndGet();
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private void syncSession(PooledConnection pooled) throws SQLException {
+        SessionSync session = sessionSync;
+        if (session == null) {
+            return;
+        }
+        long version = session.version().getAsLong();
+        if (pooled.sessionVersion == version) {
+            return;
+        }
+        try {
+            pooled.clearStatements();
+            session.sync().init(pooled.raw);
+        } catch (SQLException | RuntimeException e) {
+            discard(pooled);
+            throw e;
+        }
+        pooled.sessionVersion = version;
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, properties);
+        try {
+            initializer.init(raw);
+        } catch (SQLException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+        openCount.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledConnection(raw);
+    }
+
+    private void release(PooledConnection pooled) {
+        inUse.decrementAndGet();
+        try {
+            if (closed || !pooled.reset()) {
+                discard(pooled);
+            } else {
+                pooled.lastReturned = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        openCount.decrementAndGet();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        // Oldest idle connections sit at the tail of the deque.
+        while (idle.size() > MIN_IDLE) {
+            PooledConnection oldest = idle.pollLast();
+            if (oldest == null) {
+                return;
+            }
+            if (oldest.lastReturned > cutoff) {
+                idle.offerLast(oldest);
+                return;
+            }
+            evicted.incrementAndGet();
+            discard(oldest);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public Stats getStats() {
+        long count = acquisitions.get();
+        double avgWaitMillis = count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+        return new Stats(name, maxSize, openCount.get(), idle.size(), inUse.get(), peakInUse.get(),
+                count, avgWaitMillis, maxWaitNanos.get() / 1_000_000.0,
+                created.get(), evicted.get(), failedHealthChecks.get(),
+                statementHits.get(), statementMisses.get(), statementEvictions.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /** Point-in-time snapshot of pool utilization and wait times. */
+    public record Stats(String name, int maxSize, int open, int idle, int inUse, int peakInUse,
+                        long acquisitions, double avgWaitMillis, double maxWaitMillis,
+                        long created, long evicted, long failedHealthChecks,
+                        long statementHits, long statementMisses, long statementEvictions) {
+
+        public double utilization() {
+            return (double) inUse / maxSize;
+        }
+
+        public double statementHitRatio() {
+            long lookups = statementHits + statementMisses;
+            return lookups == 0 ? 0 : (double) statementHits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s pool: %d/%d open (%d idle, %d in use, peak %d) | utilization: %.0f%%%n" +
+                                 "Acquisitions: %d | avg wait: %.3f ms | max wait: %.3f ms%n" +
+                                 "Created: %d | evicted: %d | failed health checks: %d%n" +
+                                 "Statement cache: %d hits, %d misses (%.1f%% hit ratio), %d evicted",
+                    name, open, maxSize, idle, inUse, peakInUse, utilization() * 100,
+                    acquisitions, avgWaitMillis, maxWaitMillis,
+                    created, evicted, failedHealthChecks,
+                    statementHits, statementMisses, statementHitRatio() * 100, statementEvictions);
+        }
+    }
+
+    /** A physical connection plus the bookkeeping the pool needs for it. */
+    private final class PooledConnection {
+        final Connection raw;
+        final Map<String, CachedStatement> statements;
+        volatile long lastReturned = System.currentTimeMillis();
+        long sessionVersion = -1;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= statementCacheSize) {
+                        return false;
+                    }
+                    statementEvictions.incrementAndGet();
+                    eldest.getValue().evict();
+                    return true;
+                }
+            };
+        }
+
+        /** Returns the cached statement for this SQL, compiling and caching it on a miss. */
+        PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+            if (statementCacheSize <= 0) {
+                return raw.prepareStatement(sql);
+            }
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && cached.isUsable()) {
+                statementHits.incrementAndGet();
+            } else {
+                // Either never prepared, or the same SQL is already open on this borrow:
+                // compile a fresh one and let it replace the cached entry.
+                statementMisses.incrementAndGet();
+                CachedStatement fresh = new CachedStatement(raw.prepareStatement(sql));
+                if (cached != null) {
+                    cached.evict();
+                }
+                statements.put(sql, fresh);
+                cached = fresh;
+            }
+            return cached.checkout(owner);
+        }
+
+        void clearStatements() {
+            statements.values().forEach(CachedStatement::evict);
+            statements.clear();
+        }
+
+        boolean isHealthy() {
+            if (System.currentTimeMillis() - lastReturned < VALIDATE_AFTER_IDLE_MILLIS) {
+                return true;
+            }
+            try {
+                return raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /** Undoes anything a borrower may have left behind. Returns false if the connection is unusable. */
+        boolean reset() {
+            try {
+                if (raw.isClosed()) {
+                    return false;
+                }
+                if (!raw.getAutoCommit()) {
+                    raw.rollback();
+                    raw.setAutoCommit(true);
+                }
+                for (Iterator<CachedStatement> it = statements.values().iterator(); it.hasNext(); ) {
+                    if (!it.next().isUsable()) {
+                        it.remove();
+                    }
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Lease(this));
+        }
+    }
+
+    /** Proxy handler for one borrow of a pooled connection. */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || pooled.raw.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + pooled.raw + "]";
+                }
+                default -> {
+                    if (released) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                }
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return pooled.prepare((String) args[0], (Connection) proxy);
+            }
+            try {
+                return method.invoke(pooled.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * A compiled statement owned by the cache. Callers get a proxy whose close()
+     * clears parameters and hands the statement back instead of finalizing it.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement raw;
+        private Connection owner;
+        private boolean checkedOut;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement raw) {
+            this.raw = raw;
+        }
+
+        boolean isUsable() {
+            if (checkedOut || evicted) {
+                return false;
+            }
+            try {
+                return !raw.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        PreparedStatement checkout(Connection owner) {
+            this.owner = owner;
+            this.checkedOut = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        /** Removed from the cache: close now, or as soon as the current borrower is done. */
+        void evict() {
+            evicted = true;
+            if (!checkedOut) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                raw.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (checkedOut) {
+                        checkedOut = false;
+                        if (evicted) {
+                            closeQuietly();
+                        } else {
+                            raw.clearParameters();
+                            raw.clearBatch();
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return !checkedOut || raw.isClosed();
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    if (!checkedOut) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                }
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
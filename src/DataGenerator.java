@@ -0,0 +1,317 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible synthetic marketplace data for benchmarks and capacity tests.
+ *
+ * The same seed and scale always produce the same rows. Distributions are skewed
+ * the way a real store is:
+ *   - category sizes follow a Zipf law, so a few genres hold most of the catalog;
+ *   - games are spread over sellers by Zipf (a handful of large publishers, a long
+ *     tail of one-game sellers) and developers likewise;
+ *   - purchases pick the game by Zipf with the configured exponent (hits versus the
+ *     long tail) and the buyer by a flatter Zipf (some users buy far more than others);
+ *   - purchase dates advance with TransactionID across the configured years, like a
+ *     real append-only history, and each purchase pays the game's price.
+ *
+ * Rows are appended after whatever the tables already hold, with explicit IDs, using
+ * batched prepared inserts committed every BATCH_SIZE rows (a failure keeps the batches
+ * already committed). Sellers' GamesSold follows from the generated purchases through
+ * the schema's playstoretransaction triggers.
+ *
+ * From the command line, fills a database file (created and migrated if needed):
+ *   java -cp app/target/marketplace.jar DataGenerator --db=capacity.db --transactions=5000000 --seed=42
+ * Options: --users, --sellers, --games (derived from --transactions unless given),
+ * --zipf (purchase skew, default 1.0), --lastYear and --years (purchase date range).
+ */
+public class DataGenerator {
+
+    /** Row counts to generate. */
+    public record Scale(int users, int sellers, int games, long transactions) {
+
+        /** Users, sellers and games sized in proportion to a transaction count. */
+        public static Scale forTransactions(long transactions) {
+            return new Scale((int) Math.max(100, transactions / 10), (int) Math.max(10, transactions / 1000),
+                    (int) Math.max(50, transactions / 100), transactions);
+        }
+    }
+
+    /** IDs of the first and last generated row of each table, for callers that pick rows at random. */
+    public record Generated(int firstUserID, int lastUserID, int firstSellerID, int lastSellerID,
+                            int firstGameID, int lastGameID, long transactions) {
+    }
+
+    public static final String[] CATEGORIES = {
+            "Action", "RPG", "Strategy", "Puzzle", "FPS", "Sports", "Racing", "Indie",
+            "Simulation", "Adventure", "Horror", "Educational"
+    };
+
+    private static final String[] ADJECTIVES = {
+            "Cyber", "Shadow", "Crystal", "Iron", "Neon", "Ancient", "Galactic", "Silent", "Wild", "Frozen",
+            "Crimson", "Hidden", "Eternal", "Lost", "Rogue", "Solar"
+    };
+    private static final String[] NOUNS = {
+            "Adventure", "Legends", "Odyssey", "Tactics", "Kingdom", "Runner", "Frontier", "Arena", "Quest",
+            "Empire", "Protocol", "Horizon", "Dungeon", "Rally", "League", "Saga"
+    };
+
+    private static final int BATCH_SIZE = 50_000;
+    private static final double CATEGORY_EXPONENT = 1.1;
+    private static final double SELLER_EXPONENT = 1.2;
+    private static final double BUYER_EXPONENT = 0.6;
+
+    private final long seed;
+    private final Scale scale;
+    private final double purchaseExponent;
+    private final LocalDate firstPurchaseDate;
+    private final int years;
+
+    /**
+     * @param purchaseExponent Zipf exponent for purchases per game: 0 is uniform, ~1 is a
+     *                         typical storefront where the top game sells far more than the rest
+     * @param lastYear         purchases span the {@code years} calendar years ending with this one
+     */
+    public DataGenerator(long seed, Scale scale, double purchaseExponent, int lastYear, int years) {
+        if (scale.users() < 1 || scale.sellers() < 1 || scale.games() < 1 || scale.transactions() < 0) {
+            throw new IllegalArgumentException("Scale needs at least one user, seller and game: " + scale);
+        }
+        this.seed = seed;
+        this.scale = scale;
+        this.purchaseExponent = purchaseExponent;
+        this.firstPurchaseDate = LocalDate.of(lastYear - years + 1, 1, 1);
+        this.years = years;
+    }
+
+    public DataGenerator(long seed, Scale scale) {
+        this(seed, scale, 1.0, 2024, 3);
+    }
+
+    public Scale getScale() {
+        return scale;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unrecognised argument " + arg + " (expected --name=value)");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        Scale derived = Scale.forTransactions(Long.parseLong(options.getOrDefault("transactions", "1000000")));
+        Scale scale = new Scale(
+                Integer.parseInt(options.getOrDefault("users", String.valueOf(derived.users()))),
+                Integer.parseInt(options.getOrDefault("sellers", String.valueOf(derived.sellers()))),
+                Integer.parseInt(options.getOrDefault("games", String.valueOf(derived.games()))),
+                derived.transactions());
+        DataGenerator generator = new DataGenerator(Long.parseLong(options.getOrDefault("seed", "42")), scale,
+                Double.parseDouble(options.getOrDefault("zipf", "1.0")),
+                Integer.parseInt(options.getOrDefault("lastYear", "2024")),
+                Integer.parseInt(options.getOrDefault("years", "3")));
+        try (DatabaseManager db = new DatabaseManager("jdbc:sqlite:" + options.getOrDefault("db", "database.db"),
+                Integer.getInteger("db.pool.size", 4), PragmaProfile.named(System.getProperty("db.profile", "throughput")))) {
+            db.generateData(generator);
+        }
+    }
+
+    /** Appends the generated rows on the given connection. */
+    public Generated generate(Connection conn) throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            int userBase = nextID(conn, "users", "UserID");
+            int sellerBase = nextID(conn, "sellerinfo", "SellerID");
+            int gameBase = nextID(conn, "gamesinfo", "GameID");
+
+            insertUsers(conn, random.split(), userBase);
+            insertSellers(conn, random.split(), sellerBase);
+            double[] prices = insertGames(conn, random.split(), gameBase, sellerBase);
+            insertTransactions(conn, random.split(), userBase, gameBase, prices);
+
+            return new Generated(userBase + 1, userBase + scale.users(), sellerBase + 1, sellerBase + scale.sellers(),
+                    gameBase + 1, gameBase + scale.games(), scale.transactions());
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /** Highest ID ever handed out for the table, so generated IDs never reuse a deleted row's. */
+    private static int nextID(Connection conn, String table, String key) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(COALESCE((SELECT MAX(" + key + ") FROM " + table + "), 0), " +
+                                              "COALESCE((SELECT seq FROM sqlite_sequence WHERE name = '" + table + "'), 0));")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void insertUsers(Connection conn, SplittableRandom random, int base) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO users (UserID, UserType, Username, Email, Password) VALUES (?, ?, ?, ?, ?);")) {
+            for (int i = 1; i <= scale.users(); i++) {
+                int id = base + i;
+                pstmt.setInt(1, id);
+                pstmt.setString(2, random.nextInt(100) == 0 ? "Admin" : "Guest");
+                pstmt.setString(3, "gen_user_" + id);
+                pstmt.setString(4, "gen_user_" + id + "@example.com");
+                pstmt.setString(5, Long.toHexString(random.nextLong()));
+                pstmt.addBatch();
+                flushEvery(conn, pstmt, i);
+            }
+            flush(conn, pstmt);
+        }
+    }
+
+    private void insertSellers(Connection conn, SplittableRandom random, int base) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO sellerinfo (SellerID, SellerName, ContactInfo) VALUES (?, ?, ?);")) {
+            for (int i = 1; i <= scale.sellers(); i++) {
+                pstmt.setInt(1, base + i);
+                pstmt.setString(2, "Seller " + (base + i));
+                pstmt.setString(3, String.format("09%09d", random.nextInt(1_000_000_000)));
+                pstmt.addBatch();
+                flushEvery(conn, pstmt, i);
+            }
+            flush(conn, pstmt);
+        }
+    }
+
+    /** Inserts the games and returns their prices, indexed by GameID - gameBase - 1. */
+    private double[] insertGames(Connection conn, SplittableRandom random, int gameBase, int sellerBase)
+            throws SQLException {
+        Zipf categories = new Zipf(CATEGORIES.length, CATEGORY_EXPONENT);
+        Zipf sellers = new Zipf(scale.sellers(), SELLER_EXPONENT);
+        int developerCount = Math.max(1, scale.games() / 20);
+        Zipf developers = new Zipf(developerCount, SELLER_EXPONENT);
+        // Which seller is "big" is random, not always the lowest ID.
+        int[] sellerByRank = permutation(scale.sellers(), random);
+        double[] prices = new double[scale.games()];
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO gamesinfo (GameID, GameName, SellerID, Category, Price, Developer, YearPublished) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?);")) {
+            for (int i = 1; i <= scale.games(); i++) {
+                int id = gameBase + i;
+                prices[i - 1] = price(random);
+                pstmt.setInt(1, id);
+                pstmt.setString(2, ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " +
+                                   NOUNS[random.nextInt(NOUNS.length)] + " " + id);
+                pstmt.setInt(3, sellerBase + 1 + sellerByRank[sellers.sample(random)]);
+                pstmt.setString(4, CATEGORIES[categories.sample(random)]);
+                pstmt.setDouble(5, prices[i - 1]);
+                pstmt.setString(6, "Studio " + (1 + developers.sample(random)));
+                // Catalog grows over time: release years within the last 25, newer ones more common.
+                pstmt.setInt(7, firstPurchaseDate.getYear() + years - 1 - (24 - (int) Math.sqrt(random.nextInt(625))));
+                pstmt.addBatch();
+                flushEvery(conn, pstmt, i);
+            }
+            flush(conn, pstmt);
+        }
+        return prices;
+    }
+
+    /** Mostly $5-$60 with a cluster of cheap indie titles and a few free ones. */
+    private static double price(SplittableRandom random) {
+        int kind = random.nextInt(100);
+        if (kind < 5) {
+            return 0;
+        }
+        double price = kind < 35 ? random.nextDouble(0.99, 15) : random.nextDouble(15, 70);
+        return Math.round(price * 100) / 100.0;
+    }
+
+    private void insertTransactions(Connection conn, SplittableRandom random, int userBase, int gameBase,
+                                    double[] prices) throws SQLException {
+        Zipf games = new Zipf(scale.games(), purchaseExponent);
+        Zipf buyers = new Zipf(scale.users(), BUYER_EXPONENT);
+        int[] gameByRank = permutation(scale.games(), random);
+        int[] userByRank = permutation(scale.users(), random);
+        long days = firstPurchaseDate.plusYears(years).toEpochDay() - firstPurchaseDate.toEpochDay();
+        long firstDay = firstPurchaseDate.toEpochDay();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO playstoretransaction (UserID, GameID, PurchaseDate, TotalAmount) VALUES (?, ?, ?, ?);")) {
+            for (long i = 1; i <= scale.transactions(); i++) {
+                int game = gameByRank[games.sample(random)];
+                long day = firstDay + Math.min(days - 1, (i - 1) * days / scale.transactions());
+                pstmt.setInt(1, userBase + 1 + userByRank[buyers.sample(random)]);
+                pstmt.setInt(2, gameBase + 1 + game);
+                pstmt.setString(3, LocalDate.ofEpochDay(day).toString());
+                pstmt.setDouble(4, prices[game]);
+                pstmt.addBatch();
+                flushEvery(conn, pstmt, i);
+            }
+            flush(conn, pstmt);
+        }
+    }
+
+    private static void flushEvery(Connection conn, PreparedStatement pstmt, long rows) throws SQLException {
+        if (rows % BATCH_SIZE == 0) {
+            flush(conn, pstmt);
+        }
+    }
+
+    private static void flush(Connection conn, PreparedStatement pstmt) throws SQLException {
+        pstmt.executeBatch();
+        conn.commit();
+    }
+
+    /** A random ordering of 0..n-1 (Fisher-Yates). */
+    private static int[] permutation(int n, SplittableRandom random) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Zipf distribution over ranks 0..n-1 (rank k has weight 1 / (k+1)^exponent), sampled
+     * by binary search over the cumulative weights: O(log n) per draw, 8 bytes per rank.
+     */
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k++) {
+                total += 1.0 / Math.pow(k + 1, exponent);
+                cumulative[k] = total;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= total;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            double u = random.nextDouble();
+            int lo = 0;
+            int hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] < u) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
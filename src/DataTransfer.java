@@ -0,0 +1,525 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Streaming CSV and NDJSON export/import for the marketplace tables.
+ *
+ * Export walks the table in primary-key order through a forward-only cursor and
+ * writes each row straight to a buffered file channel, so memory use does not grow
+ * with the table. Import reads one record at a time and inserts with JDBC batches,
+ * borrowing a write connection only to insert and commit each batch, so other writers
+ * get their turn between batches; primary keys are imported as-is so foreign keys between
+ * the files line up. Import the tables in TABLES order to satisfy the foreign keys.
+ * Sellers' GamesSold is exported but not imported; it counts the imported transactions.
+ *
+ * CSV files have a header row of column names. An empty unquoted field is NULL and
+ * "" is the empty string. Quoted fields may contain commas, quotes ("") and newlines.
+ * NDJSON files hold one JSON object per line keyed by column name. Blank lines are
+ * skipped in both formats.
+ */
+public final class DataTransfer {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /** Picks the format from the file extension: .csv, or .ndjson / .jsonl. */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Unknown file type for " + file + " (expected .csv, .ndjson or .jsonl)");
+        }
+
+        public String extension() {
+            return this == CSV ? ".csv" : ".ndjson";
+        }
+    }
+
+    /** Lends a write connection; closing it gives it back (e.g. ConnectionPool::getConnection). */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private enum ColumnType { INTEGER, REAL, TEXT }
+
+    /** A derived column is exported but not imported: the schema's triggers recompute it. */
+    private record Column(String name, ColumnType type, boolean derived) {
+        Column(String name, ColumnType type) {
+            this(name, type, false);
+        }
+    }
+
+    private record Table(String name, String primaryKey, List<Column> columns) {
+    }
+
+    private static final Map<String, Table> SCHEMA = new LinkedHashMap<>();
+
+    static {
+        define("users", "UserID",
+                new Column("UserID", ColumnType.INTEGER), new Column("UserType", ColumnType.TEXT),
+                new Column("Username", ColumnType.TEXT), new Column("Email", ColumnType.TEXT),
+                new Column("Password", ColumnType.TEXT));
+        define("sellerinfo", "SellerID",
+                new Column("SellerID", ColumnType.INTEGER), new Column("SellerName", ColumnType.TEXT),
+                new Column("ContactInfo", ColumnType.TEXT), new Column("GamesSold", ColumnType.INTEGER, true));
+        define("gamesinfo", "GameID",
+                new Column("GameID", ColumnType.INTEGER), new Column("GameName", ColumnType.TEXT),
+                new Column("SellerID", ColumnType.INTEGER), new Column("Category", ColumnType.TEXT),
+                new Column("Price", ColumnType.REAL), new Column("Developer", ColumnType.TEXT),
+                new Column("YearPublished", ColumnType.INTEGER));
+        define("playstoretransaction", "TransactionID",
+                new Column("TransactionID", ColumnType.INTEGER), new Column("UserID", ColumnType.INTEGER),
+                new Column("GameID", ColumnType.INTEGER), new Column("PurchaseDate", ColumnType.TEXT),
+                new Column("TotalAmount", ColumnType.REAL));
+    }
+
+    /** Every transferable table, parents before children. */
+    public static final List<String> TABLES = List.copyOf(SCHEMA.keySet());
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long PROGRESS_INTERVAL_NANOS = 2_000_000_000L;
+
+    private DataTransfer() {
+    }
+
+    private static void define(String name, String primaryKey, Column... columns) {
+        SCHEMA.put(name, new Table(name, primaryKey, List.of(columns)));
+    }
+
+    private static Table table(String name) {
+        Table table = SCHEMA.get(name);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown table '" + name + "' (expected one of " + TABLES + ")");
+        }
+        return table;
+    }
+
+    // ---- Export ---------------------------------------------------------------------------
+
+    /** Writes every row of a table to the file, replacing it. Returns the number of rows written. */
+    public static long export(Connection conn, String tableName, Path file, int fetchSize)
+            throws SQLException, IOException {
+        return export(conn, tableName, tableName, file, fetchSize);
+    }
+
+    /**
+     * Like export(), but reads the table's columns from {@code source}, a table or view
+     * with the same columns (e.g. all_transactions, which adds the partitioned months).
+     */
+    public static long export(Connection conn, String tableName, String source, Path file, int fetchSize)
+            throws SQLException, IOException {
+        Table table = table(tableName);
+        Format format = Format.of(file);
+        List<Column> columns = table.columns();
+        String sql = "SELECT " + String.join(", ", columns.stream().map(Column::name).toList()) +
+                     " FROM " + source + " ORDER BY " + table.primaryKey() + ";";
+        Progress progress = new Progress("Exporting " + table.name(), -1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(fetchSize);
+            if (format == Format.CSV) {
+                for (int i = 0; i < columns.size(); i++) {
+                    out.write(i == 0 ? "" : ",");
+                    out.write(columns.get(i).name());
+                }
+                out.write('\n');
+            }
+            Object[] row = new Object[columns.size()];
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = read(rs, i + 1, columns.get(i).type());
+                    }
+                    if (format == Format.CSV) {
+                        writeCsvRow(out, row);
+                    } else {
+                        writeJsonRow(out, columns, row);
+                    }
+                    progress.row(-1);
+                }
+            }
+            out.flush();
+            progress.done(channel.size(), null);
+        }
+        return progress.rows;
+    }
+
+    private static Object read(ResultSet rs, int index, ColumnType type) throws SQLException {
+        Object value = switch (type) {
+            case INTEGER -> rs.getLong(index);
+            case REAL -> rs.getDouble(index);
+            case TEXT -> rs.getString(index);
+        };
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void writeCsvRow(Writer out, Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Object value = row[i];
+            if (value instanceof String s) {
+                writeCsvString(out, s);
+            } else if (value != null) {
+                out.write(value.toString());
+            }
+        }
+        out.write('\n');
+    }
+
+    private static void writeCsvString(Writer out, String s) throws IOException {
+        boolean quote = s.isEmpty();
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static void writeJsonRow(Writer out, List<Column> columns, Object[] row) throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        for (int i = 0; i < row.length; i++) {
+            object.put(columns.get(i).name(), row[i]);
+        }
+        out.write(Json.write(object));
+        out.write('\n');
+    }
+
+    // ---- Import ---------------------------------------------------------------------------
+
+    /**
+     * Inserts every record in the file into the table, committing every {@code batchSize}
+     * rows. Records are parsed into a batch without a connection; one is borrowed from
+     * {@code connections} for each batch's insert and commit only. Columns missing from
+     * the file get their defaults. If a batch fails it is rolled back and the import stops;
+     * the result's nextOffset is the number of records committed so far.
+     */
+    public static BulkIngestResult importFile(ConnectionSource connections, String tableName, Path file,
+                                              int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        Table table = table(tableName);
+        Format format = Format.of(file);
+        long start = System.nanoTime();
+        long committed = 0;
+        String error = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            Progress progress = new Progress("Importing " + table.name(), channel.size());
+            RecordReader records = format == Format.CSV ? new CsvReader(in, table) : new NdjsonReader(in, table);
+            List<Column> columns = records.columns();
+            // GamesSold starts at its default and counts the imported transactions instead.
+            int[] bound = IntStream.range(0, columns.size()).filter(i -> !columns.get(i).derived()).toArray();
+            String sql = "INSERT INTO " + table.name() + " (" +
+                         String.join(", ", IntStream.of(bound).mapToObj(i -> columns.get(i).name()).toList()) +
+                         ") VALUES (" + String.join(", ", IntStream.of(bound).mapToObj(i -> "?").toList()) + ");";
+            List<Object[]> batch = new ArrayList<>(Math.min(batchSize, 8192));
+            try {
+                Object[] values;
+                while ((values = records.next()) != null) {
+                    batch.add(values);
+                    if (batch.size() == batchSize) {
+                        committed += insertBatch(connections, sql, columns, bound, batch, committed);
+                        batch.clear();
+                    }
+                    progress.row(channel.position());
+                }
+                if (!batch.isEmpty()) {
+                    committed += insertBatch(connections, sql, columns, bound, batch, committed);
+                }
+            } catch (SQLException | IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            progress.done(channel.size(), error);
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+        }
+        return new BulkIngestResult(committed, committed, System.nanoTime() - start, error);
+    }
+
+    /**
+     * Inserts and commits one batch on a borrowed connection, or rolls it back, binding the
+     * values at the {@code bound} indexes. The batch follows {@code before} records already
+     * committed, for numbering errors.
+     */
+    private static int insertBatch(ConnectionSource connections, String sql, List<Column> columns, int[] bound,
+                                   List<Object[]> batch, long before) throws SQLException {
+        try (Connection conn = connections.get()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int r = 0; r < batch.size(); r++) {
+                    Object[] values = batch.get(r);
+                    for (int i = 0; i < bound.length; i++) {
+                        bind(pstmt, i + 1, columns.get(bound[i]), values[bound[i]], before + r + 1);
+                    }
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+                return batch.size();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, int index, Column column, Object value, long record)
+            throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, switch (column.type()) {
+                case INTEGER -> Types.BIGINT;
+                case REAL -> Types.DOUBLE;
+                case TEXT -> Types.VARCHAR;
+            });
+            return;
+        }
+        try {
+            switch (column.type()) {
+                case INTEGER -> pstmt.setLong(index, value instanceof Number n ? n.longValue() : Long.parseLong(value.toString()));
+                case REAL -> pstmt.setDouble(index, value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString()));
+                case TEXT -> pstmt.setString(index, value.toString());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Record " + record + ": invalid " + column.name() + " '" + value + "'");
+        }
+    }
+
+    /** Yields one record at a time as values in columns() order; null at end of input. */
+    private interface RecordReader {
+        List<Column> columns();
+
+        Object[] next() throws IOException;
+    }
+
+    private static final class CsvReader implements RecordReader {
+        private final Reader in;
+        private final List<Column> columns = new ArrayList<>();
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private long record;
+
+        CsvReader(Reader in, Table table) throws IOException {
+            this.in = in;
+            if (!readRecord()) {
+                throw new IllegalArgumentException("Empty CSV file: no header row");
+            }
+            for (String name : fields) {
+                columns.add(column(table, name));
+            }
+        }
+
+        @Override
+        public List<Column> columns() {
+            return columns;
+        }
+
+        @Override
+        public Object[] next() throws IOException {
+            if (!readRecord()) {
+                return null;
+            }
+            record++;
+            if (fields.size() != columns.size()) {
+                throw new IllegalArgumentException("Record " + record + ": expected " + columns.size() +
+                                                   " fields but found " + fields.size());
+            }
+            return fields.toArray();
+        }
+
+        /**
+         * Reads the next record into fields (null entries for NULL), skipping blank lines as
+         * the NDJSON reader does. Returns false at end of input.
+         */
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean inQuotes = false;
+            int c = in.read();
+            while (c == '\n' || c == '\r') {
+                c = in.read();
+            }
+            if (c == -1) {
+                return false;
+            }
+            while (true) {
+                if (inQuotes) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("Record " + (record + 1) + ": unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int nextChar = in.read();
+                        if (nextChar == '"') {
+                            field.append('"');
+                        } else {
+                            inQuotes = false;
+                            c = nextChar;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == ',') {
+                    endField(quoted);
+                    quoted = false;
+                } else if (c == '\n' || c == -1) {
+                    endField(quoted);
+                    return true;
+                } else if (c == '"' && field.length() == 0 && !quoted) {
+                    quoted = true;
+                    inQuotes = true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+
+        private void endField(boolean quoted) {
+            fields.add(field.length() == 0 && !quoted ? null : field.toString());
+            field.setLength(0);
+        }
+    }
+
+    private static final class NdjsonReader implements RecordReader {
+        private final BufferedReader in;
+        private final List<Column> columns = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private Map<String, Object> first;
+        private long record;
+
+        NdjsonReader(BufferedReader in, Table table) throws IOException {
+            this.in = in;
+            // The first record fixes the column list so every row binds the same INSERT.
+            first = readObject();
+            if (first != null) {
+                for (String key : first.keySet()) {
+                    columns.add(column(table, key));
+                    keys.add(key);
+                }
+            }
+        }
+
+        @Override
+        public List<Column> columns() {
+            return columns;
+        }
+
+        @Override
+        public Object[] next() throws IOException {
+            Map<String, Object> object = first != null ? first : readObject();
+            first = null;
+            if (object == null) {
+                return null;
+            }
+            record++;
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = object.get(keys.get(i));
+            }
+            if (!keys.containsAll(object.keySet())) {
+                throw new IllegalArgumentException("Record " + record + ": has fields not present in the first record");
+            }
+            return values;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> readObject() throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (!(Json.parse(line) instanceof Map<?, ?> map)) {
+                    throw new IllegalArgumentException("Record " + (record + 1) + ": expected a JSON object");
+                }
+                return (Map<String, Object>) map;
+            }
+            return null;
+        }
+    }
+
+    private static Column column(Table table, String name) {
+        return table.columns().stream()
+                .filter(c -> c.name().equalsIgnoreCase(name.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Table " + table.name() + " has no column '" + name + "'"));
+    }
+
+    /** Prints a progress line at most every couple of seconds, then a summary. */
+    private static final class Progress {
+        private final String label;
+        private final long totalBytes;
+        private final long start = System.nanoTime();
+        private long lastReport = start;
+        private long rows;
+
+        Progress(String label, long totalBytes) {
+            this.label = label;
+            this.totalBytes = totalBytes;
+        }
+
+        void row(long bytesRead) {
+            rows++;
+            // Checking the clock on every row would cost more than the row itself.
+            if ((rows & 0x3FF) != 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - lastReport < PROGRESS_INTERVAL_NANOS) {
+                return;
+            }
+            lastReport = now;
+            double seconds = (now - start) / 1e9;
+            String percent = totalBytes > 0 && bytesRead >= 0
+                    ? String.format(" (%.0f%%)", 100.0 * bytesRead / totalBytes) : "";
+            System.out.printf("  %s: %,d rows%s, %,.0f rows/sec%n", label, rows, percent, rows / seconds);
+        }
+
+        void done(long bytes, String error) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s %s: %,d rows, %.1f MB in %.2f s (%,.0f rows/sec, %.1f MB/sec)%s%n",
+                    error == null ? "✅" : "❌", label, rows, bytes / 1e6, seconds,
+                    seconds == 0 ? 0 : rows / seconds, seconds == 0 ? 0 : bytes / 1e6 / seconds,
+                    error == null ? "" : " | " + error);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+import java.sql.SQLException;
+
+/**
+ * Unchecked wrapper for SQLExceptions raised by the typed query API, so results
+ * can be consumed as Streams without checked exceptions in every lambda.
+ */
+public class DatabaseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseException(String message, SQLException cause) {
+        super(message + ": " + cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
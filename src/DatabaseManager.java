@@ -1,15 +1,198 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class DatabaseManager {
+public class DatabaseManager implements AutoCloseable {
 
     private static final String URL = "jdbc:sqlite:database.db";
 
+    // Pool settings, overridable with -Ddb.pool.size=... etc. Reads and writes use separate pools:
+    // db.pool.size read-only connections and db.pool.writers read-write ones.
+    private static final int POOL_SIZE = Integer.getInteger("db.pool.size", 4);
+    private static final int WRITER_POOL_SIZE = Integer.getInteger("db.pool.writers", 1);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("db.pool.idleTimeoutMs", 60_000L);
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = Long.getLong("db.pool.acquireTimeoutMs", 30_000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.pool.statementCacheSize", 32);
+
+    // PRAGMA preset applied to every connection: -Ddb.profile=durable|throughput
+    private static final String PROFILE = System.getProperty("db.profile", "throughput");
+
+    // Write-behind mode: -Ddb.writeBehind=true routes the *Async inserts through a group-commit queue.
+    private static final boolean WRITE_BEHIND = Boolean.getBoolean("db.writeBehind");
+    private static final int WRITE_BEHIND_CAPACITY = Integer.getInteger("db.writeBehind.capacity", 10_000);
+    private static final int WRITE_BEHIND_MAX_BATCH = Integer.getInteger("db.writeBehind.maxBatch", 500);
+
+    // Optional read-through cache for gamesinfo lookups: -Ddb.catalogCache=true
+    private static final boolean CATALOG_CACHE = Boolean.getBoolean("db.catalogCache");
+    private static final int CATALOG_CACHE_MAX_ENTRIES = Integer.getInteger("db.catalogCache.maxEntries", 1_000);
+    private static final long CATALOG_CACHE_TTL_MS = Long.getLong("db.catalogCache.ttlMs", 300_000L);
+
+    // Rows fetched per round trip by the streaming queries: -Ddb.fetchSize=...
+    private static final int FETCH_SIZE = Integer.getInteger("db.fetchSize", 500);
+
+    // Fast start for short scripted runs: -Ddb.fastStart=true skips the PRAGMA read-back at startup
+    // and turns JMX off unless db.jmx is set. -Ddb.startupTiming=true logs the time to first query.
+    private static final boolean FAST_START = Boolean.getBoolean("db.fastStart");
+    private static final boolean STARTUP_TIMING = Boolean.getBoolean("db.startupTiming");
+
+    // Per-operation metrics: calls slower than db.slowQueryMs are logged; -Ddb.jmx=false skips the MBeans.
+    private static final long SLOW_QUERY_MS = Long.getLong("db.slowQueryMs", 100L);
+    private static final boolean JMX = Boolean.parseBoolean(System.getProperty("db.jmx", String.valueOf(!FAST_START)));
+
+    private static final int DEFAULT_BULK_CHUNK_SIZE = 10_000;
+
+    // Purchases retried on SQLITE_BUSY, with jittered exponential backoff starting at db.purchase.backoffMs.
+    private static final int PURCHASE_MAX_ATTEMPTS = Integer.getInteger("db.purchase.maxAttempts", 5);
+    private static final long PURCHASE_BACKOFF_MS = Long.getLong("db.purchase.backoffMs", 10L);
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    // Online backups copy db.backup.pagesPerStep pages per step; see StorageMaintenance.
+    private static final int BACKUP_PAGES_PER_STEP = Integer.getInteger("db.backup.pagesPerStep", 1_000);
+
+    // Every db.vacuum.intervalMs (0 disables it) up to db.vacuum.pages free pages are returned to the
+    // file system, from main and each live partition file. Takes effect only with auto_vacuum=INCREMENTAL,
+    // which new databases and partition files are created with.
+    private static final long VACUUM_INTERVAL_MS = Long.getLong("db.vacuum.intervalMs", 300_000L);
+    private static final int VACUUM_PAGES = Integer.getInteger("db.vacuum.pages", 2_000);
+
+    // -Ddb.partitions=true writes transactions to one attached file per PurchaseDate month, in
+    // db.partitions.dir (default: <database name>-partitions next to the database); see TransactionPartitions.
+    private static final boolean PARTITIONS = Boolean.getBoolean("db.partitions");
+
+    // sqlite3_open_v2 flag, passed through the driver's open_mode property.
+    private static final int SQLITE_OPEN_READONLY = 0x00000001;
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (UserType, Username, Email, Password) VALUES (?, ?, ?, ?);";
+    private static final String INSERT_SELLER_SQL =
+            "INSERT INTO sellerinfo (SellerName, ContactInfo) VALUES (?, ?);";
+    private static final String INSERT_GAME_SQL =
+            "INSERT INTO gamesinfo (GameName, SellerID, Category, Price, Developer, YearPublished) VALUES (?, ?, ?, ?, ?, ?);";
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO playstoretransaction (UserID, GameID, PurchaseDate, TotalAmount) VALUES (?, ?, ?, ?);";
+    // Game price and seller plus whether the buyer exists, in one lookup.
+    private static final String PURCHASE_LOOKUP_SQL =
+            "SELECT g.Price, g.SellerID, EXISTS (SELECT 1 FROM users WHERE UserID = ?) AS UserExists " +
+            "FROM gamesinfo g WHERE g.GameID = ?;";
+    private static final String INSERT_PURCHASE_SQL =
+            "INSERT INTO playstoretransaction (UserID, GameID, PurchaseDate, TotalAmount) VALUES (?, ?, ?, ?) " +
+            "RETURNING TransactionID;";
+
+    private final String url;
+    private final ConnectionPool writePool;
+    private final ConnectionPool readPool;
+    private final PragmaProfile profile;
+    private WriteBehindQueue writeBehind;
+    private Thread writeBehindFlush;
+    private final ReadThroughCache<String, List<Game>> gamesByCategory;
+    private final ReadThroughCache<Integer, Game> gamesById;
+    private final QueryMetrics metrics;
+    private final TransactionPartitions partitions;
+    private final SalesAnalytics salesAnalytics;
+    private final ScheduledExecutorService vacuumScheduler;
+    private volatile StorageMaintenance.Backup lastBackup;
+
     public DatabaseManager() {
+        this(URL, POOL_SIZE, PragmaProfile.named(PROFILE));
+    }
+
+    /**
+     * @param poolSize number of read-only connections; writes use their own pool of
+     *                 db.pool.writers connections (default 1, since SQLite has a single writer)
+     */
+    public DatabaseManager(String url, int poolSize, PragmaProfile profile) {
         loadDriver();
-        createDatabaseIfNotExists();
-        if (isDatabaseEmpty()) {
-            createSchema();
-            insertSampleData();
+        this.url = url;
+        this.profile = profile;
+        metrics = new QueryMetrics(SLOW_QUERY_MS, JMX ? url : null);
+        if (STARTUP_TIMING) {
+            metrics.logTimeToFirstOperation();
+        }
+        writePool = new ConnectionPool("write", url, new Properties(), WRITER_POOL_SIZE, POOL_IDLE_TIMEOUT_MS,
+                POOL_ACQUIRE_TIMEOUT_MS, STATEMENT_CACHE_SIZE, profile::apply);
+        if (CATALOG_CACHE) {
+            gamesByCategory = new ReadThroughCache<>("games-by-category", CATALOG_CACHE_MAX_ENTRIES, CATALOG_CACHE_TTL_MS);
+            gamesById = new ReadThroughCache<>("games-by-id", CATALOG_CACHE_MAX_ENTRIES, CATALOG_CACHE_TTL_MS);
+        } else {
+            gamesByCategory = null;
+            gamesById = null;
+        }
+        initialize();
+        partitions = openPartitions(url);
+        if (partitions != null) {
+            writePool.setSessionSync(partitions::version, partitions::sync);
+        }
+        // Opened only now: a read-only connection cannot create the file or its schema.
+        Properties readOnly = new Properties();
+        readOnly.setProperty("open_mode", String.valueOf(SQLITE_OPEN_READONLY));
+        readPool = new ConnectionPool("read", url, readOnly, poolSize, POOL_IDLE_TIMEOUT_MS,
+                POOL_ACQUIRE_TIMEOUT_MS, STATEMENT_CACHE_SIZE, profile::applyReadOnly);
+        if (partitions != null) {
+            readPool.setSessionSync(partitions::version, partitions::sync);
+            salesAnalytics = new SalesAnalytics(FETCH_SIZE, "all_transactions", "all_spending_totals");
+        } else {
+            salesAnalytics = new SalesAnalytics(FETCH_SIZE);
+        }
+        if (WRITE_BEHIND) {
+            startWriteBehind(WRITE_BEHIND_CAPACITY, WRITE_BEHIND_MAX_BATCH);
+        }
+        if (VACUUM_INTERVAL_MS > 0) {
+            vacuumScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sqlite-incremental-vacuum");
+                t.setDaemon(true);
+                return t;
+            });
+            vacuumScheduler.scheduleWithFixedDelay(() -> vacuumStep(VACUUM_PAGES),
+                    VACUUM_INTERVAL_MS, VACUUM_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } else {
+            vacuumScheduler = null;
+        }
+    }
+
+    /** Enables write-behind mode with the configured queue capacity and batch size. */
+    public void enableWriteBehind() {
+        startWriteBehind(WRITE_BEHIND_CAPACITY, WRITE_BEHIND_MAX_BATCH);
+    }
+
+    /**
+     * Switches the *Async insert methods to a bounded write-behind queue drained by a
+     * single writer thread in group-committed transactions. Their futures complete once
+     * the write is durable: groups commit with synchronous=FULL even under the throughput
+     * profile. Queued writes are flushed on close() and on JVM shutdown.
+     */
+    public void enableWriteBehind(int capacity, int maxBatch) {
+        startWriteBehind(capacity, maxBatch);
+    }
+
+    // Private so the constructor can call it without handing out a half-built instance to an override.
+    private synchronized void startWriteBehind(int capacity, int maxBatch) {
+        if (writeBehind == null) {
+            writeBehind = new WriteBehindQueue(writePool, capacity, maxBatch);
+            writeBehindFlush = new Thread(writeBehind::close, "sqlite-write-behind-flush");
+            Runtime.getRuntime().addShutdownHook(writeBehindFlush);
+            System.out.println("✅ Write-behind mode enabled (capacity " + capacity + ", max batch " + maxBatch + ")");
         }
     }
 
@@ -23,19 +206,79 @@ public class DatabaseManager {
         }
     }
 
-    private void createDatabaseIfNotExists() {
-        try (Connection conn = DriverManager.getConnection(URL)) {
-            if (conn != null) {
-                System.out.println("✅ Database file created or already exists!");
+    /**
+     * Opens the transaction partitions when db.partitions is set. Otherwise only checks that
+     * there are none, since their rows would silently drop out of every query.
+     */
+    private static TransactionPartitions openPartitions(String url) {
+        String configured = System.getProperty("db.partitions.dir");
+        Path directory;
+        if (configured != null) {
+            directory = Path.of(configured).toAbsolutePath();
+        } else {
+            directory = TransactionPartitions.directoryFor(Path.of(url.substring(url.indexOf("sqlite:") + "sqlite:".length())));
+        }
+        try {
+            if (PARTITIONS) {
+                TransactionPartitions opened = TransactionPartitions.open(directory);
+                System.out.println("✅ Transaction partitions in " + directory + ": " +
+                                   (opened.liveMonths().isEmpty() ? "none yet" : String.join(", ", opened.liveMonths())));
+                return opened;
+            }
+            if (!TransactionPartitions.months(directory).isEmpty()) {
+                System.out.println("⚠️ " + directory + " holds transaction partitions, but partitioning is off: " +
+                                   "their transactions are left out until you run with -Ddb.partitions=true");
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("❌ Error opening transaction partitions: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Creates, migrates and seeds the database as needed, all on one write connection.
+     * A database whose cached schema version is current needs nothing else, so a
+     * routine start costs one PRAGMA user_version probe (plus the PRAGMA read-back
+     * unless db.fastStart is set).
+     */
+    private void initialize() {
+        try (Connection conn = writePool.getConnection()) {
+            System.out.println("✅ Database file created or already exists!");
+            if (!FAST_START) {
+                logEffectivePragmas(conn);
+            }
+            if (SchemaMigrations.cachedVersion(conn) == SchemaMigrations.latestVersion()) {
+                return;
+            }
+            boolean freshDatabase = isDatabaseEmpty(conn);
+            if (freshDatabase) {
+                // Before the first table, so the VACUUM that applies the mode is instant.
+                StorageMaintenance.enableIncrementalAutoVacuum(conn);
+            }
+            createSchema(conn);
+            if (freshDatabase) {
+                insertSampleData(conn);
             }
         } catch (SQLException e) {
             System.out.println("❌ Error creating database: " + e.getMessage());
         }
     }
 
-    private boolean isDatabaseEmpty() {
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
+    private void logEffectivePragmas(Connection conn) throws SQLException {
+        Map<String, String> effective = profile.effectiveSettings(conn);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> setting : effective.entrySet()) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(setting.getKey()).append('=').append(setting.getValue());
+        }
+        System.out.println("✅ PRAGMA profile '" + profile.name().toLowerCase() + "' in effect: " + sb);
+        String requested = profile.settings().get("journal_mode");
+        if (!requested.equalsIgnoreCase(effective.get("journal_mode"))) {
+            System.out.println("⚠️ Requested journal_mode=" + requested + " but SQLite is using " + effective.get("journal_mode"));
+        }
+    }
+
+    private boolean isDatabaseEmpty(Connection conn) {
+        try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name='users';")) {
             return !rs.next() || rs.getInt(1) == 0;
         } catch (SQLException e) {
@@ -43,54 +286,19 @@ public class DatabaseManager {
         }
     }
 
-    private void createSchema() {
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement()) {
-
-            stmt.execute("PRAGMA foreign_keys = ON;");
-
-            // Create tables according to the documentation schema
-            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
-                         "UserID INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                         "UserType VARCHAR(20) NOT NULL, " +
-                         "Username VARCHAR(50) NOT NULL UNIQUE, " +
-                         "Email VARCHAR(100) UNIQUE, " +
-                         "Password VARCHAR(100) NOT NULL);");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS sellerinfo (" +
-                         "SellerID INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                         "SellerName VARCHAR(100), " +
-                         "ContactInfo VARCHAR(100), " +
-                         "GamesSold INTEGER UNSIGNED DEFAULT 0);");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS gamesinfo (" +
-                         "GameID INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                         "GameName VARCHAR(100) NOT NULL, " +
-                         "SellerID INTEGER, " +
-                         "Category VARCHAR(50), " + 
-                         "Price DECIMAL(10,2), " +
-                         "Developer VARCHAR(100), " +
-                         "YearPublished INTEGER, " +
-                         "FOREIGN KEY (SellerID) REFERENCES sellerinfo(SellerID));");
-
-            stmt.execute("CREATE TABLE IF NOT EXISTS playstoretransaction (" +
-                         "TransactionID INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                         "UserID INTEGER, " +
-                         "GameID INTEGER, " +
-                         "PurchaseDate TEXT, " +
-                         "TotalAmount REAL, " +
-                         "FOREIGN KEY (UserID) REFERENCES users(UserID) ON DELETE CASCADE, " +
-                         "FOREIGN KEY (GameID) REFERENCES gamesinfo(GameID) ON DELETE CASCADE);");
-
-            System.out.println("✅ Database tables created successfully!");
+    private void createSchema(Connection conn) {
+        try {
+            int applied = SchemaMigrations.migrate(conn);
+            if (applied > 0) {
+                System.out.println("✅ Database schema is at version " + SchemaMigrations.latestVersion() + "!");
+            }
         } catch (SQLException e) {
-            System.out.println("❌ Error creating tables: " + e.getMessage());
+            System.out.println("❌ Error migrating schema: " + e.getMessage());
         }
     }
 
-    private void insertSampleData() {
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement()) {
+    private void insertSampleData(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
             // Insert sample users
             stmt.executeUpdate("INSERT INTO users (UserType, Username, Email, Password) VALUES " +
                     "('Admin', 'GameSeller1', 'seller1@example.com', 'securepassword'), " +
@@ -118,211 +326,1346 @@ public class DatabaseManager {
     }
 
     public void addUser(String userType, String username, String email, String password) {
-        String sql = "INSERT INTO users (UserType, Username, Email, Password) VALUES (?, ?, ?, ?);";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, userType);
-            pstmt.setString(2, username);
-            pstmt.setString(3, email);
-            pstmt.setString(4, password);
-            pstmt.executeUpdate();
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection()) {
+            insertUser(userType, username, email, password).apply(conn);
+            metrics.record("addUser", start, 1, true);
             System.out.println("✅ User added successfully!");
         } catch (SQLException e) {
+            metrics.record("addUser", start, 0, false);
             System.out.println("❌ Error adding user: " + e.getMessage());
         }
     }
 
     public void addSeller(String sellerName, String contactInfo) {
-        String sql = "INSERT INTO sellerinfo (SellerName, ContactInfo) VALUES (?, ?);";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, sellerName);
-            pstmt.setString(2, contactInfo);
-            pstmt.executeUpdate();
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection()) {
+            insertSeller(sellerName, contactInfo).apply(conn);
+            metrics.record("addSeller", start, 1, true);
             System.out.println("✅ Seller added successfully!");
         } catch (SQLException e) {
+            metrics.record("addSeller", start, 0, false);
             System.out.println("❌ Error adding seller: " + e.getMessage());
         }
     }
 
     public void addGame(String gameName, int sellerID, String category, double price, String developer, int yearPublished) {
-        String sql = "INSERT INTO gamesinfo (GameName, SellerID, Category, Price, Developer, YearPublished) VALUES (?, ?, ?, ?, ?, ?);";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, gameName);
-            pstmt.setInt(2, sellerID);
-            pstmt.setString(3, category);
-            pstmt.setDouble(4, price);
-            pstmt.setString(5, developer);
-            pstmt.setInt(6, yearPublished);
-            pstmt.executeUpdate();
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection()) {
+            insertGame(gameName, sellerID, category, price, developer, yearPublished).apply(conn);
+            metrics.record("addGame", start, 1, true);
+            gamesChanged(category);
             System.out.println("✅ Game added successfully!");
         } catch (SQLException e) {
+            metrics.record("addGame", start, 0, false);
             System.out.println("❌ Error adding game: " + e.getMessage());
         }
     }
 
     public void addTransaction(int userID, int gameID, String purchaseDate, double totalAmount) {
-        String sql = "INSERT INTO playstoretransaction (UserID, GameID, PurchaseDate, TotalAmount) VALUES (?, ?, ?, ?);";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, userID);
-            pstmt.setInt(2, gameID);
-            pstmt.setString(3, purchaseDate);
-            pstmt.setDouble(4, totalAmount);
-            pstmt.executeUpdate();
+        long start = System.nanoTime();
+        preparePartition(purchaseDate);
+        try (Connection conn = writePool.getConnection()) {
+            insertTransaction(userID, gameID, purchaseDate, totalAmount).apply(conn);
+            metrics.record("addTransaction", start, 1, true);
             System.out.println("✅ Transaction added successfully!");
         } catch (SQLException e) {
+            metrics.record("addTransaction", start, 0, false);
             System.out.println("❌ Error adding transaction: " + e.getMessage());
         }
     }
 
-    public void getUsersSortedByUsername() {
-        String sql = "SELECT UserID, Username, Email FROM users ORDER BY Username ASC;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("UserID") + 
-                                  ", Username: " + rs.getString("Username") +
-                                  ", Email: " + rs.getString("Email"));
+    /**
+     * Buys a game for a user at the game's current catalog price, today. In one
+     * BEGIN IMMEDIATE transaction it checks that both exist and inserts the transaction,
+     * whose insert trigger increments the seller's GamesSold in the same commit. Taking
+     * the write lock up front means the transaction cannot fail part-way on a lock
+     * upgrade; if the lock is still busy after busy_timeout the whole purchase is retried,
+     * up to db.purchase.maxAttempts times with jittered exponential backoff.
+     *
+     * @throws IllegalArgumentException if the user or game does not exist, or the game has no price
+     * @throws DatabaseException if the purchase could not be committed
+     */
+    public Purchase purchaseGame(int userID, int gameID) {
+        long start = System.nanoTime();
+        preparePartition(LocalDate.now().toString());
+        try (Connection conn = writePool.getConnection()) {
+            for (int attempt = 1; ; attempt++) {
+                long attemptStart = System.nanoTime();
+                try {
+                    Purchase purchase = purchaseOnce(conn, userID, gameID);
+                    metrics.record("purchaseGame", start, 1, true);
+                    return purchase;
+                } catch (SQLException e) {
+                    if (!isBusy(e) || attempt == PURCHASE_MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    // One call per retry, so the retry rate shows up next to purchaseGame.
+                    metrics.record("purchaseGame.busyRetry", attemptStart, 0, false);
+                    backoff(attempt);
+                }
+            }
+        } catch (SQLException e) {
+            metrics.record("purchaseGame", start, 0, false);
+            throw new DatabaseException("Purchase failed", e);
+        } catch (IllegalArgumentException e) {
+            metrics.record("purchaseGame", start, 0, false);
+            throw e;
+        }
+    }
+
+    private Purchase purchaseOnce(Connection conn, int userID, int gameID) throws SQLException {
+        try (Statement tx = conn.createStatement()) {
+            tx.execute("BEGIN IMMEDIATE;");
+            try {
+                Purchase purchase = recordPurchase(conn, userID, gameID);
+                tx.execute("COMMIT;");
+                return purchase;
+            } catch (SQLException | RuntimeException e) {
+                tx.execute("ROLLBACK;");
+                throw e;
+            }
+        }
+    }
+
+    private Purchase recordPurchase(Connection conn, int userID, int gameID) throws SQLException {
+        double price;
+        Integer sellerID;
+        try (PreparedStatement lookup = conn.prepareStatement(PURCHASE_LOOKUP_SQL)) {
+            lookup.setInt(1, userID);
+            lookup.setInt(2, gameID);
+            try (ResultSet rs = lookup.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalArgumentException("No game with ID " + gameID);
+                }
+                if (!rs.getBoolean("UserExists")) {
+                    throw new IllegalArgumentException("No user with ID " + userID);
+                }
+                price = rs.getDouble("Price");
+                if (rs.wasNull()) {
+                    throw new IllegalArgumentException("Game " + gameID + " has no price");
+                }
+                int seller = rs.getInt("SellerID");
+                sellerID = rs.wasNull() ? null : seller;
+            }
+        }
+        String purchaseDate = LocalDate.now().toString();
+        long transactionID;
+        if (partitions != null) {
+            transactionID = partitions.insert(conn, userID, gameID, purchaseDate, price);
+        } else {
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_PURCHASE_SQL)) {
+                insert.setInt(1, userID);
+                insert.setInt(2, gameID);
+                insert.setString(3, purchaseDate);
+                insert.setDouble(4, price);
+                try (ResultSet rs = insert.executeQuery()) {
+                    rs.next();
+                    transactionID = rs.getLong(1);
+                }
+            }
+        }
+        return new Purchase(transactionID, userID, gameID, sellerID, purchaseDate, price);
+    }
+
+    private static boolean isBusy(SQLException e) {
+        // Extended result codes (e.g. SQLITE_BUSY_SNAPSHOT) keep the primary code in the low byte.
+        int code = e.getErrorCode() & 0xff;
+        return code == SQLITE_BUSY || code == SQLITE_LOCKED;
+    }
+
+    /** Sleeps between half and all of PURCHASE_BACKOFF_MS * 2^(attempt-1), so retries spread out. */
+    private static void backoff(int attempt) throws SQLException {
+        long ceiling = PURCHASE_BACKOFF_MS << (attempt - 1);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    // Asynchronous variants: the future completes once the row is committed.
+    // Without write-behind mode they run synchronously on the caller's thread.
+
+    public CompletableFuture<Void> addUserAsync(String userType, String username, String email, String password) {
+        return submit("addUserAsync", insertUser(userType, username, email, password));
+    }
+
+    public CompletableFuture<Void> addSellerAsync(String sellerName, String contactInfo) {
+        return submit("addSellerAsync", insertSeller(sellerName, contactInfo));
+    }
+
+    public CompletableFuture<Void> addGameAsync(String gameName, int sellerID, String category, double price,
+                                                String developer, int yearPublished) {
+        return submit("addGameAsync", insertGame(gameName, sellerID, category, price, developer, yearPublished))
+                .whenComplete((ignored, error) -> gamesChanged(category));
+    }
+
+    public CompletableFuture<Void> addTransactionAsync(int userID, int gameID, String purchaseDate, double totalAmount) {
+        preparePartition(purchaseDate);
+        return submit("addTransactionAsync", insertTransaction(userID, gameID, purchaseDate, totalAmount));
+    }
+
+    public CompletableFuture<Void> updateUserEmailAsync(int userID, String newEmail) {
+        return submit("updateUserEmailAsync", conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE users SET Email = ? WHERE UserID = ?;")) {
+                pstmt.setString(1, newEmail);
+                pstmt.setInt(2, userID);
+                pstmt.executeUpdate();
+            }
+        });
+    }
+
+    public CompletableFuture<Void> deleteUserAsync(int userID) {
+        return submit("deleteUserAsync", conn -> deleteUserRows(conn, userID));
+    }
+
+    /** Runs or enqueues a mutation; the recorded latency runs until the row is committed. */
+    private CompletableFuture<Void> submit(String operation, WriteBehindQueue.Mutation mutation) {
+        long start = System.nanoTime();
+        WriteBehindQueue queue;
+        synchronized (this) {
+            queue = writeBehind;
+        }
+        CompletableFuture<Void> future;
+        if (queue != null) {
+            future = queue.submit(mutation);
+        } else {
+            try (Connection conn = writePool.getConnection()) {
+                mutation.apply(conn);
+                future = CompletableFuture.completedFuture(null);
+            } catch (SQLException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+        }
+        return future.whenComplete((ignored, error) -> metrics.record(operation, start, error == null ? 1 : 0, error == null));
+    }
+
+    private static WriteBehindQueue.Mutation insertUser(String userType, String username, String email, String password) {
+        return conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_USER_SQL)) {
+                pstmt.setString(1, userType);
+                pstmt.setString(2, username);
+                pstmt.setString(3, email);
+                pstmt.setString(4, password);
+                pstmt.executeUpdate();
+            }
+        };
+    }
+
+    private static WriteBehindQueue.Mutation insertSeller(String sellerName, String contactInfo) {
+        return conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SELLER_SQL)) {
+                pstmt.setString(1, sellerName);
+                pstmt.setString(2, contactInfo);
+                pstmt.executeUpdate();
+            }
+        };
+    }
+
+    private static WriteBehindQueue.Mutation insertGame(String gameName, int sellerID, String category, double price,
+                                                        String developer, int yearPublished) {
+        return conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_GAME_SQL)) {
+                pstmt.setString(1, gameName);
+                pstmt.setInt(2, sellerID);
+                pstmt.setString(3, category);
+                pstmt.setDouble(4, price);
+                pstmt.setString(5, developer);
+                pstmt.setInt(6, yearPublished);
+                pstmt.executeUpdate();
+            }
+        };
+    }
+
+    private WriteBehindQueue.Mutation insertTransaction(int userID, int gameID, String purchaseDate, double totalAmount) {
+        if (partitions != null) {
+            return conn -> partitions.insert(conn, userID, gameID, purchaseDate, totalAmount);
+        }
+        return conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                pstmt.setInt(1, userID);
+                pstmt.setInt(2, gameID);
+                pstmt.setString(3, purchaseDate);
+                pstmt.setDouble(4, totalAmount);
+                pstmt.executeUpdate();
+            }
+        };
+    }
+
+    public BulkIngestResult addTransactions(Iterable<Transaction> transactions) {
+        return addTransactions(transactions, DEFAULT_BULK_CHUNK_SIZE, 0);
+    }
+
+    public BulkIngestResult addTransactions(Stream<Transaction> transactions, int chunkSize, long resumeFrom) {
+        return addTransactions(transactions::iterator, chunkSize, resumeFrom);
+    }
+
+    /**
+     * Imports transactions with batched inserts, committing every {@code chunkSize} rows.
+     * The first {@code resumeFrom} rows of the input are skipped. If a chunk fails it is
+     * rolled back and the import stops; the result's nextOffset says where to resume.
+     * With partitioning on, each row goes to its month's partition like addTransaction.
+     */
+    public BulkIngestResult addTransactions(Iterable<Transaction> transactions, int chunkSize, long resumeFrom) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        long start = System.nanoTime();
+        long committed = resumeFrom;
+        String error = null;
+        Iterator<Transaction> it = transactions.iterator();
+        for (long skipped = 0; skipped < resumeFrom && it.hasNext(); skipped++) {
+            it.next();
+        }
+        List<Transaction> chunk = new ArrayList<>(Math.min(chunkSize, 8192));
+        try {
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size() == chunkSize) {
+                    insertTransactionChunk(chunk);
+                    committed += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                insertTransactionChunk(chunk);
+                committed += chunk.size();
             }
         } catch (SQLException e) {
-            System.out.println("❌ Error retrieving users: " + e.getMessage());
+            error = e.getMessage();
+        }
+
+        BulkIngestResult result = new BulkIngestResult(committed - resumeFrom, committed, System.nanoTime() - start, error);
+        metrics.record("addTransactions", start, result.rowsCommitted(), result.succeeded());
+        if (result.succeeded()) {
+            System.out.println("✅ Transactions imported: " + result);
+        } else {
+            System.out.println("❌ Error importing transactions: " + result);
+        }
+        return result;
+    }
+
+    /** Inserts and commits one chunk of addTransactions on a borrowed writer, or rolls it back. */
+    private void insertTransactionChunk(List<Transaction> chunk) throws SQLException {
+        if (partitions != null) {
+            chunk.stream().map(Transaction::purchaseDate).map(TransactionPartitions::monthOf).distinct()
+                    .forEach(partitions::prepare);
+        }
+        try (Connection conn = writePool.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (partitions != null) {
+                    partitions.insertBatch(conn, chunk);
+                } else {
+                    try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TRANSACTION_SQL)) {
+                        for (Transaction t : chunk) {
+                            pstmt.setInt(1, t.userID());
+                            pstmt.setInt(2, t.gameID());
+                            pstmt.setString(3, t.purchaseDate());
+                            pstmt.setDouble(4, t.totalAmount());
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
     public void updateUserEmail(int userID, String newEmail) {
         String sql = "UPDATE users SET Email = ? WHERE UserID = ?;";
-        try (Connection conn = DriverManager.getConnection(URL);
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, newEmail);
             pstmt.setInt(2, userID);
-            pstmt.executeUpdate();
+            int updated = pstmt.executeUpdate();
+            metrics.record("updateUserEmail", start, updated, true);
             System.out.println("✅ User email updated successfully!");
         } catch (SQLException e) {
+            metrics.record("updateUserEmail", start, 0, false);
             System.out.println("❌ Error updating user email: " + e.getMessage());
         }
     }
 
     public void deleteUser(int userID) {
-        String sql = "DELETE FROM users WHERE UserID = ?;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, userID);
-            pstmt.executeUpdate();
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection()) {
+            int deleted = deleteUserRows(conn, userID);
+            metrics.record("deleteUser", start, deleted, true);
             System.out.println("✅ User deleted successfully!");
         } catch (SQLException e) {
+            metrics.record("deleteUser", start, 0, false);
             System.out.println("❌ Error deleting user: " + e.getMessage());
         }
     }
 
-    public void getTotalSpendingPerUser() {
-        String sql = "SELECT u.Username, SUM(t.TotalAmount) AS TotalSpent " +
-                    "FROM users u " +
-                    "JOIN playstoretransaction t ON u.UserID = t.UserID " +
-                    "GROUP BY u.UserID " +
-                    "ORDER BY TotalSpent DESC;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                System.out.println("User: " + rs.getString("Username") + 
-                                  " | Total Spent: $" + rs.getDouble("TotalSpent"));
+    /** Deletes a user; their transactions go with them, in main by ON DELETE CASCADE. */
+    private int deleteUserRows(Connection conn, int userID) throws SQLException {
+        if (partitions != null) {
+            return partitions.deleteUser(conn, userID);
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM users WHERE UserID = ?;")) {
+            pstmt.setInt(1, userID);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /** Creates the partition for a purchase date's month, if partitioning is on and it has none yet. */
+    private void preparePartition(String purchaseDate) {
+        if (partitions != null) {
+            partitions.prepare(TransactionPartitions.monthOf(purchaseDate));
+        }
+    }
+
+    // Read queries. Each one is available as a lazily-pulled Stream (which holds a pooled
+    // connection until it is closed or exhausted, so always use try-with-resources) and as
+    // a page of rows collected into a List.
+
+    private static final String USERS_BY_USERNAME_SQL =
+            "SELECT UserID, Username, Email FROM users ORDER BY Username ASC";
+    private static final String GAMES_BY_CATEGORY_SQL =
+            "SELECT GameID, GameName, SellerID, Category, Price, Developer, YearPublished " +
+            "FROM gamesinfo " +
+            "WHERE Category = ? " +
+            "ORDER BY Price DESC";
+    private static final String GAME_BY_ID_SQL =
+            "SELECT GameID, GameName, SellerID, Category, Price, Developer, YearPublished " +
+            "FROM gamesinfo " +
+            "WHERE GameID = ?";
+    // Full-text search over games_fts (schema migration 5). bm25 weights a match in the
+    // name above one in the developer, and both above a category match; lower is better.
+    private static final String SEARCH_GAMES_SQL =
+            "SELECT g.GameID, g.GameName, g.SellerID, g.Category, g.Price, g.Developer, g.YearPublished " +
+            "FROM games_fts f " +
+            "JOIN gamesinfo g ON g.GameID = f.rowid " +
+            "WHERE games_fts MATCH ? " +
+            "ORDER BY bm25(games_fts, 10.0, 5.0, 1.0), g.GameID";
+    private static final String SELLERS_WITH_GAME_COUNTS_SQL =
+            "SELECT s.SellerID, s.SellerName, COUNT(g.GameID) as GameCount " +
+            "FROM sellerinfo s " +
+            "JOIN gamesinfo g ON s.SellerID = g.SellerID " +
+            "GROUP BY s.SellerID " +
+            "ORDER BY GameCount DESC";
+    // Spending queries read the trigger-maintained summaries (schema migration 4), so they
+    // cost O(users) instead of a scan of every transaction.
+    private static final String TOTAL_SPENDING_PER_USER_SQL =
+            "SELECT u.UserID, u.Username, s.TotalSpent " +
+            "FROM user_spending s " +
+            "JOIN users u ON u.UserID = s.UserID " +
+            "ORDER BY s.TotalSpent DESC";
+    private static final String USERS_ABOVE_AVERAGE_SPENDING_SQL =
+            "SELECT u.UserID, u.Username, s.TotalSpent " +
+            "FROM user_spending s " +
+            "JOIN users u ON u.UserID = s.UserID " +
+            "WHERE s.TotalSpent > (SELECT TotalSpent / NULLIF(AmountCount, 0) FROM spending_totals WHERE ID = 1)";
+    // The same over main and every transaction partition, through the TEMP views TransactionPartitions.sync defines.
+    private static final String PARTITIONED_TOTAL_SPENDING_PER_USER_SQL =
+            "SELECT u.UserID, u.Username, s.TotalSpent " +
+            "FROM all_user_spending s " +
+            "JOIN users u ON u.UserID = s.UserID " +
+            "ORDER BY s.TotalSpent DESC";
+    private static final String PARTITIONED_USERS_ABOVE_AVERAGE_SPENDING_SQL =
+            "SELECT u.UserID, u.Username, s.TotalSpent " +
+            "FROM all_user_spending s " +
+            "JOIN users u ON u.UserID = s.UserID " +
+            "WHERE s.TotalSpent > (SELECT TotalSpent / NULLIF(AmountCount, 0) FROM all_spending_totals WHERE ID = 1)";
+    private static final String USERS_WITH_TRANSACTIONS_SQL =
+            "SELECT u.UserID, u.Username, t.TransactionID, t.PurchaseDate, t.TotalAmount " +
+            "FROM users u " +
+            "LEFT JOIN playstoretransaction t ON u.UserID = t.UserID " +
+            "ORDER BY u.UserID, t.TransactionID";
+    // Keyset pagination: seek past the last key of the previous page instead of OFFSET.
+    private static final String USERS_FIRST_PAGE_SQL =
+            "SELECT UserID, Username, Email FROM users " +
+            "ORDER BY Username, UserID";
+    private static final String USERS_NEXT_PAGE_SQL =
+            "SELECT UserID, Username, Email FROM users " +
+            "WHERE (Username, UserID) > (?, ?) " +
+            "ORDER BY Username, UserID";
+    // Users without transactions appear once with a NULL TransactionID, keyed as 0.
+    private static final String USERS_WITH_TRANSACTIONS_PAGE_SQL =
+            "SELECT u.UserID, u.Username, t.TransactionID, t.PurchaseDate, t.TotalAmount " +
+            "FROM users u " +
+            "LEFT JOIN playstoretransaction t ON u.UserID = t.UserID " +
+            "WHERE u.UserID >= ? AND (u.UserID > ? OR COALESCE(t.TransactionID, 0) > ?) " +
+            "ORDER BY u.UserID, t.TransactionID";
+    private static final String SELLERS_WITH_ALL_GAMES_SQL =
+            "SELECT s.SellerName, g.GameName " +
+            "FROM sellerinfo s " +
+            "RIGHT JOIN gamesinfo g ON s.SellerID = g.SellerID " +
+            "ORDER BY g.GameID";
+
+    public Stream<User> streamUsersSortedByUsername() {
+        return stream("streamUsersSortedByUsername", USERS_BY_USERNAME_SQL, User::from, FETCH_SIZE);
+    }
+
+    public Stream<User> streamUsersSortedByUsername(int fetchSize) {
+        return stream("streamUsersSortedByUsername", USERS_BY_USERNAME_SQL, User::from, fetchSize);
+    }
+
+    /**
+     * Keyset-paginated users ordered by (Username, UserID). Pass null for the first page,
+     * then the previous page's nextToken.
+     */
+    public KeysetPage<User> getUsersSortedByUsername(String pageToken, int pageSize) {
+        if (pageToken == null) {
+            return keysetPage("getUsersSortedByUsername", USERS_FIRST_PAGE_SQL, User::from, pageSize,
+                    u -> KeysetPage.encodeToken("users", String.valueOf(u.userID()), u.username()));
+        }
+        String[] key = KeysetPage.decodeToken("users", pageToken, 2);
+        return keysetPage("getUsersSortedByUsername", USERS_NEXT_PAGE_SQL, User::from, pageSize,
+                u -> KeysetPage.encodeToken("users", String.valueOf(u.userID()), u.username()),
+                key[1], Integer.parseInt(key[0]));
+    }
+
+    public Stream<Game> streamGamesByCategory(String category) {
+        if (gamesByCategory != null) {
+            return getGamesByCategory(category).stream();
+        }
+        return stream("streamGamesByCategory", GAMES_BY_CATEGORY_SQL, Game::from, FETCH_SIZE, category);
+    }
+
+    /** All games in a category, served from the catalog cache when it is enabled. */
+    public List<Game> getGamesByCategory(String category) {
+        if (gamesByCategory == null) {
+            return list("getGamesByCategory", GAMES_BY_CATEGORY_SQL, Game::from, category);
+        }
+        long start = System.nanoTime();
+        List<Game> games = gamesByCategory.get(category,
+                c -> List.copyOf(list("getGamesByCategory.load", GAMES_BY_CATEGORY_SQL, Game::from, c)))
+                .orElse(List.of());
+        metrics.record("getGamesByCategory", start, games.size(), true);
+        return games;
+    }
+
+    public Optional<Game> getGameById(int gameID) {
+        if (gamesById == null) {
+            List<Game> rows = list("getGameById", GAME_BY_ID_SQL, Game::from, gameID);
+            return rows.stream().findFirst();
+        }
+        long start = System.nanoTime();
+        Optional<Game> game = gamesById.get(gameID,
+                id -> list("getGameById.load", GAME_BY_ID_SQL, Game::from, id).stream().findFirst().orElse(null));
+        metrics.record("getGameById", start, game.isPresent() ? 1 : 0, true);
+        return game;
+    }
+
+    /**
+     * Drops cached catalog entries a gamesinfo write may have made stale. Every path that
+     * inserts, updates or deletes games must call this: with the game's category when only
+     * that category is affected, or with null to flush the whole catalog.
+     */
+    private void gamesChanged(String category) {
+        if (gamesByCategory == null) {
+            return;
+        }
+        if (category == null) {
+            gamesByCategory.invalidateAll();
+            gamesById.invalidateAll();
+        } else {
+            gamesByCategory.invalidate(category);
+        }
+    }
+
+    public List<Game> getGamesByCategory(String category, int page, int pageSize) {
+        return page("getGamesByCategory", GAMES_BY_CATEGORY_SQL, Game::from, page, pageSize, category);
+    }
+
+    /**
+     * Ranked full-text search over game names, developers and categories (pages are
+     * numbered from 0). Every word of {@code text} must match; the last one also matches
+     * as a prefix, so "cyber adv" finds "Cyber Adventure". Punctuation is ignored.
+     */
+    public List<Game> searchGames(String text, int page, int pageSize) {
+        return page("searchGames", SEARCH_GAMES_SQL, Game::from, page, pageSize, toSearchQuery(text));
+    }
+
+    /**
+     * Turns free text into an FTS5 query of quoted terms, so characters that mean something
+     * in the query syntax (quotes, colons, AND/OR/NOT, ...) are searched for as plain words.
+     */
+    private static String toSearchQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                query.append(query.length() == 0 ? "" : " ").append('"').append(word).append('"');
+            }
+        }
+        if (query.length() == 0) {
+            throw new IllegalArgumentException("Search text must contain at least one letter or digit");
+        }
+        return query.append('*').toString();
+    }
+
+    public Stream<SellerGameCount> streamSellersWithGames() {
+        return stream("streamSellersWithGames", SELLERS_WITH_GAME_COUNTS_SQL, SellerGameCount::from, FETCH_SIZE);
+    }
+
+    public List<SellerGameCount> getSellersWithGames(int page, int pageSize) {
+        return page("getSellersWithGames", SELLERS_WITH_GAME_COUNTS_SQL, SellerGameCount::from, page, pageSize);
+    }
+
+    public Stream<UserSpending> streamTotalSpendingPerUser() {
+        return stream("streamTotalSpendingPerUser", totalSpendingPerUserSql(), UserSpending::from, FETCH_SIZE);
+    }
+
+    public List<UserSpending> getTotalSpendingPerUser(int page, int pageSize) {
+        return page("getTotalSpendingPerUser", totalSpendingPerUserSql(), UserSpending::from, page, pageSize);
+    }
+
+    public Stream<UserSpending> streamUsersAboveAverageSpending() {
+        return stream("streamUsersAboveAverageSpending", usersAboveAverageSpendingSql(), UserSpending::from, FETCH_SIZE);
+    }
+
+    public List<UserSpending> getUsersAboveAverageSpending(int page, int pageSize) {
+        return page("getUsersAboveAverageSpending", usersAboveAverageSpendingSql(), UserSpending::from, page, pageSize);
+    }
+
+    private String totalSpendingPerUserSql() {
+        return partitions == null ? TOTAL_SPENDING_PER_USER_SQL : PARTITIONED_TOTAL_SPENDING_PER_USER_SQL;
+    }
+
+    private String usersAboveAverageSpendingSql() {
+        return partitions == null ? USERS_ABOVE_AVERAGE_SPENDING_SQL : PARTITIONED_USERS_ABOVE_AVERAGE_SPENDING_SQL;
+    }
+
+    public Stream<UserTransaction> streamAllUsersWithTransactions() {
+        return streamAllUsersWithTransactions(FETCH_SIZE);
+    }
+
+    public Stream<UserTransaction> streamAllUsersWithTransactions(int fetchSize) {
+        if (partitions != null) {
+            TransactionPartitions.UserTransactionMerge merge =
+                    mergeUsersWithTransactions("streamAllUsersWithTransactions", 0, 0, fetchSize);
+            return StreamSupport.stream(merge, false).onClose(merge::close);
+        }
+        return stream("streamAllUsersWithTransactions", USERS_WITH_TRANSACTIONS_SQL, UserTransaction::from, fetchSize);
+    }
+
+    /**
+     * Keyset-paginated users with their transactions, ordered by (UserID, TransactionID).
+     * Pass null for the first page, then the previous page's nextToken.
+     */
+    public KeysetPage<UserTransaction> getAllUsersWithTransactions(String pageToken, int pageSize) {
+        int afterUser = 0;
+        int afterTransaction = 0;
+        if (pageToken != null) {
+            String[] key = KeysetPage.decodeToken("user-transactions", pageToken, 2);
+            afterUser = Integer.parseInt(key[0]);
+            afterTransaction = Integer.parseInt(key[1]);
+        }
+        if (partitions != null) {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("Page size must be >= 1");
+            }
+            TransactionPartitions.UserTransactionMerge merge = mergeUsersWithTransactions(
+                    "getAllUsersWithTransactions", afterUser, afterTransaction, pageSize + 1);
+            List<UserTransaction> rows;
+            // As in keysetPage: the extra row only tells us whether there is a next page.
+            try (Stream<UserTransaction> merged = StreamSupport.stream(merge, false).onClose(merge::close)) {
+                rows = merged.limit(pageSize + 1).toList();
             }
+            if (rows.size() <= pageSize) {
+                return new KeysetPage<>(rows, null);
+            }
+            rows = rows.subList(0, pageSize);
+            UserTransaction last = rows.get(pageSize - 1);
+            return new KeysetPage<>(rows, KeysetPage.encodeToken("user-transactions", String.valueOf(last.userID()),
+                    String.valueOf(Objects.requireNonNullElse(last.transactionID(), 0))));
+        }
+        return keysetPage("getAllUsersWithTransactions", USERS_WITH_TRANSACTIONS_PAGE_SQL, UserTransaction::from, pageSize,
+                t -> KeysetPage.encodeToken("user-transactions", String.valueOf(t.userID()),
+                        String.valueOf(Objects.requireNonNullElse(t.transactionID(), 0))),
+                afterUser, afterUser, afterTransaction);
+    }
+
+    public Stream<SellerGame> streamAllSellersWithGames() {
+        return stream("streamAllSellersWithGames", SELLERS_WITH_ALL_GAMES_SQL, SellerGame::from, FETCH_SIZE);
+    }
+
+    public List<SellerGame> getAllSellersWithGames(int page, int pageSize) {
+        return page("getAllSellersWithGames", SELLERS_WITH_ALL_GAMES_SQL, SellerGame::from, page, pageSize);
+    }
+
+    /**
+     * Runs a query and exposes its rows as a Stream pulled from the open ResultSet.
+     * The connection goes back to the pool when the stream is closed or runs out of rows.
+     */
+    private <T> Stream<T> stream(String operation, String sql, RowMapper<T> mapper, int fetchSize, Object... params) {
+        long start = System.nanoTime();
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs;
+        try {
+            conn = readPool.getConnection();
+            pstmt = conn.prepareStatement(sql + ";");
+            pstmt.setFetchSize(fetchSize);
+            bind(pstmt, params);
+            rs = pstmt.executeQuery();
         } catch (SQLException e) {
-            System.out.println("❌ Error calculating spending: " + e.getMessage());
+            closeQuietly(pstmt, conn);
+            metrics.record(operation, start, 0, false);
+            throw new DatabaseException("Query failed", e);
         }
+        Cursor<T> cursor = new Cursor<>(conn, pstmt, rs, mapper,
+                (rows, success) -> metrics.record(operation, start, rows, success));
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
     }
 
-    public void getGamesByCategory(String category) {
-        String sql = "SELECT GameName, Price, Developer, YearPublished " +
-                    "FROM gamesinfo " +
-                    "WHERE Category = ? " +
-                    "ORDER BY Price DESC;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, category);
-            ResultSet rs = pstmt.executeQuery();
-            System.out.println("Games in category: " + category);
-            while (rs.next()) {
-                System.out.println("Game: " + rs.getString("GameName") + 
-                                  " | Price: $" + rs.getDouble("Price") +
-                                  " | Developer: " + rs.getString("Developer") +
-                                  " | Year: " + rs.getInt("YearPublished"));
+    /**
+     * Users with their transactions across main and every partition, merged in
+     * (UserID, TransactionID) order. The merge owns a read connection until it is closed
+     * or runs out of rows.
+     */
+    private TransactionPartitions.UserTransactionMerge mergeUsersWithTransactions(String operation, int afterUser,
+                                                                                  int afterTransaction, int fetchSize) {
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = readPool.getConnection();
+        } catch (SQLException e) {
+            metrics.record(operation, start, 0, false);
+            throw new DatabaseException("Query failed", e);
+        }
+        try {
+            // On failure the merge closes the connection and records the call itself.
+            return new TransactionPartitions.UserTransactionMerge(conn, afterUser, afterTransaction, fetchSize,
+                    (rows, success) -> metrics.record(operation, start, rows, success));
+        } catch (SQLException e) {
+            throw new DatabaseException("Query failed", e);
+        }
+    }
+
+    /** Runs a query and returns one page of its rows (pages are numbered from 0). */
+    private <T> List<T> page(String operation, String sql, RowMapper<T> mapper, int page, int pageSize, Object... params) {
+        if (page < 0 || pageSize < 1) {
+            throw new IllegalArgumentException("Page must be >= 0 and page size >= 1");
+        }
+        Object[] pagedParams = Arrays.copyOf(params, params.length + 2);
+        pagedParams[params.length] = pageSize;
+        pagedParams[params.length + 1] = (long) page * pageSize;
+        return list(operation, sql + " LIMIT ? OFFSET ?", mapper, pagedParams);
+    }
+
+    /**
+     * Runs a keyset query with LIMIT pageSize + 1; the extra row only tells us whether
+     * there is a next page, whose token is built from the last row returned.
+     */
+    private <T> KeysetPage<T> keysetPage(String operation, String sql, RowMapper<T> mapper, int pageSize,
+                                         Function<T, String> tokenOf, Object... params) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be >= 1");
+        }
+        Object[] pagedParams = Arrays.copyOf(params, params.length + 1);
+        pagedParams[params.length] = pageSize + 1;
+        List<T> rows = list(operation, sql + " LIMIT ?", mapper, pagedParams);
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(rows, null);
+        }
+        rows = rows.subList(0, pageSize);
+        return new KeysetPage<>(rows, tokenOf.apply(rows.get(pageSize - 1)));
+    }
+
+    private <T> List<T> list(String operation, String sql, RowMapper<T> mapper, Object... params) {
+        long start = System.nanoTime();
+        try (Connection conn = readPool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql + ";")) {
+            bind(pstmt, params);
+            List<T> rows = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
             }
+            metrics.record(operation, start, rows.size(), true);
+            return rows;
         } catch (SQLException e) {
-            System.out.println("❌ Error retrieving games by category: " + e.getMessage());
+            metrics.record(operation, start, 0, false);
+            throw new DatabaseException("Query failed", e);
+        }
+    }
+
+    private static void bind(PreparedStatement pstmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            pstmt.setObject(i + 1, params[i]);
         }
     }
 
-    public void getSellersWithGames() {
-        String sql = "SELECT s.SellerName, COUNT(g.GameID) as GameCount " +
-                    "FROM sellerinfo s " +
-                    "JOIN gamesinfo g ON s.SellerID = g.SellerID " +
-                    "GROUP BY s.SellerID " +
-                    "ORDER BY GameCount DESC;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                System.out.println("Seller: " + rs.getString("SellerName") + 
-                                  " | Games Available: " + rs.getInt("GameCount"));
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.err.println("Error closing " + resource + ": " + e.getMessage());
             }
+        }
+    }
+
+    /** Called once when a Cursor closes, with the number of rows it produced. */
+    @FunctionalInterface
+    private interface CursorListener {
+        void closed(long rows, boolean success);
+    }
+
+    /** Spliterator over an open ResultSet that owns the statement and connection behind it. */
+    private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection conn;
+        private final PreparedStatement pstmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private final CursorListener listener;
+        private long rows;
+        private boolean failed;
+        private boolean closed;
+
+        Cursor(Connection conn, PreparedStatement pstmt, ResultSet rs, RowMapper<T> mapper, CursorListener listener) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.pstmt = pstmt;
+            this.rs = rs;
+            this.mapper = mapper;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                rows++;
+                return true;
+            } catch (SQLException e) {
+                failed = true;
+                close();
+                throw new DatabaseException("Reading query results failed", e);
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(rs, pstmt, conn);
+                listener.closed(rows, !failed);
+            }
+        }
+    }
+
+    // Differences between one file's spending summaries and a full recompute from its playstoretransaction.
+    private static String spendingSummaryDriftSql(String schema) {
+        return "WITH recomputed AS (" +
+               "SELECT UserID, COUNT(*) AS TransactionCount, COALESCE(SUM(TotalAmount), 0) AS TotalSpent " +
+               "FROM " + schema + ".playstoretransaction WHERE UserID IS NOT NULL GROUP BY UserID) " +
+               "SELECT COALESCE(r.UserID, s.UserID) AS UserID, " +
+               "r.TransactionCount AS ExpectedCount, r.TotalSpent AS ExpectedTotal, " +
+               "s.TransactionCount AS ActualCount, s.TotalSpent AS ActualTotal " +
+               "FROM recomputed r FULL OUTER JOIN " + schema + ".user_spending s ON r.UserID = s.UserID " +
+               "WHERE r.UserID IS NULL OR s.UserID IS NULL " +
+               "OR r.TransactionCount <> s.TransactionCount OR ABS(r.TotalSpent - s.TotalSpent) > 0.005 " +
+               "UNION ALL " +
+               "SELECT NULL, COUNT(t.TotalAmount), COALESCE(SUM(t.TotalAmount), 0), g.AmountCount, g.TotalSpent " +
+               "FROM " + schema + ".playstoretransaction t, " + schema + ".spending_totals g WHERE g.ID = 1 " +
+               "GROUP BY g.ID " +
+               "HAVING COUNT(t.TotalAmount) <> g.AmountCount OR ABS(COALESCE(SUM(t.TotalAmount), 0) - g.TotalSpent) > 0.005;";
+    }
+
+    /** main, plus every attached month when partitioning is on. */
+    private List<String> databaseSchemas(Connection conn) throws SQLException {
+        return partitions == null ? List.of("main") : TransactionPartitions.schemas(conn);
+    }
+
+    /**
+     * Compares the spending summaries against a full recompute and prints any drift.
+     * With partitioning on, every live month is checked against its own summaries.
+     * Returns true when they agree.
+     */
+    public boolean verifySpendingSummary() {
+        long start = System.nanoTime();
+        try (Connection conn = readPool.getConnection()) {
+            int mismatches = 0;
+            for (String schema : databaseSchemas(conn)) {
+                String file = schema.equals("main") ? "" : " in " + schema;
+                try (PreparedStatement pstmt = conn.prepareStatement(spendingSummaryDriftSql(schema));
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        mismatches++;
+                        int userID = rs.getInt("UserID");
+                        String scope = (rs.wasNull() ? "Global totals" : "User " + userID) + file;
+                        System.out.println("❌ " + scope +
+                                           " | expected " + rs.getLong("ExpectedCount") + " txns / $" + rs.getDouble("ExpectedTotal") +
+                                           " | summary has " + rs.getLong("ActualCount") + " txns / $" + rs.getDouble("ActualTotal"));
+                    }
+                }
+            }
+            metrics.record("verifySpendingSummary", start, mismatches, true);
+            if (mismatches == 0) {
+                System.out.println("✅ Spending summary matches a full recompute!");
+            }
+            return mismatches == 0;
+        } catch (SQLException e) {
+            metrics.record("verifySpendingSummary", start, 0, false);
+            System.out.println("❌ Error verifying spending summary: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Discards the spending summaries and recomputes them from playstoretransaction, in main
+     * and in every live month, in one transaction.
+     */
+    public void rebuildSpendingSummary() {
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            try {
+                for (String schema : databaseSchemas(conn)) {
+                    stmt.executeUpdate("DELETE FROM " + schema + ".user_spending;");
+                    stmt.executeUpdate("INSERT INTO " + schema + ".user_spending (UserID, TransactionCount, TotalSpent) " +
+                                       "SELECT UserID, COUNT(*), COALESCE(SUM(TotalAmount), 0) FROM " +
+                                       schema + ".playstoretransaction WHERE UserID IS NOT NULL GROUP BY UserID;");
+                    // Counted as a deletion: a rebuild follows changes the triggers missed, so copies of
+                    // the old rows (SalesAnalytics) must reload too.
+                    stmt.executeUpdate("INSERT INTO " + schema + ".spending_totals (ID, AmountCount, TotalSpent) " +
+                                       "SELECT 1, COUNT(TotalAmount), COALESCE(SUM(TotalAmount), 0) FROM " +
+                                       schema + ".playstoretransaction " +
+                                       "WHERE true ON CONFLICT (ID) DO UPDATE SET AmountCount = excluded.AmountCount, " +
+                                       "TotalSpent = excluded.TotalSpent, Deletions = Deletions + 1;");
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            metrics.record("rebuildSpendingSummary", start, 0, true);
+            System.out.println("✅ Spending summary rebuilt!");
         } catch (SQLException e) {
-            System.out.println("❌ Error retrieving sellers: " + e.getMessage());
+            metrics.record("rebuildSpendingSummary", start, 0, false);
+            System.out.println("❌ Error rebuilding spending summary: " + e.getMessage());
         }
     }
 
-    public void getUsersAboveAverageSpending() {
-        String sql = "SELECT u.Username, SUM(t.TotalAmount) AS TotalSpent " +
-                    "FROM users u " +
-                    "JOIN playstoretransaction t ON u.UserID = t.UserID " +
-                    "GROUP BY u.UserID " +
-                    "HAVING TotalSpent > (SELECT AVG(TotalAmount) FROM playstoretransaction);";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                System.out.println("User: " + rs.getString("Username") + 
-                                  " | Total Spent: $" + rs.getDouble("TotalSpent"));
+    /**
+     * Repopulates the game search index from gamesinfo and merges its segments. Needed only
+     * if gamesinfo was changed with the triggers bypassed (e.g. by another tool).
+     */
+    public void rebuildGameSearchIndex() {
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO games_fts (games_fts) VALUES ('rebuild');");
+            stmt.executeUpdate("INSERT INTO games_fts (games_fts) VALUES ('optimize');");
+            long games;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM gamesinfo;")) {
+                games = rs.next() ? rs.getLong(1) : 0;
             }
+            metrics.record("rebuildGameSearchIndex", start, games, true);
+            System.out.println("✅ Game search index rebuilt (" + games + " games indexed)!");
+        } catch (SQLException e) {
+            metrics.record("rebuildGameSearchIndex", start, 0, false);
+            System.out.println("❌ Error rebuilding game search index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the in-memory sales snapshot up to date, reading only transactions added since
+     * the last refresh unless {@code full}, and returns it for reporting. Returns null if the
+     * refresh failed.
+     */
+    public SalesAnalytics refreshSalesAnalytics(boolean full) {
+        long start = System.nanoTime();
+        try (Connection conn = readPool.getConnection()) {
+            SalesAnalytics.Refresh refresh = salesAnalytics.refresh(conn, full);
+            metrics.record("refreshSalesAnalytics", start, refresh.rowsLoaded(), true);
+            System.out.printf("✅ Sales snapshot %s: %,d transactions loaded, %,d held (%.1f ms)%n",
+                    refresh.fullReload() ? "loaded" : "refreshed", refresh.rowsLoaded(), refresh.rowsHeld(),
+                    (System.nanoTime() - start) / 1e6);
+            return salesAnalytics;
+        } catch (SQLException e) {
+            metrics.record("refreshSalesAnalytics", start, 0, false);
+            System.out.println("❌ Error refreshing sales snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends a synthetic dataset (see DataGenerator) and reports rows/sec.
+     * Returns the ID ranges generated, or null if generation failed.
+     */
+    public DataGenerator.Generated generateData(DataGenerator generator) {
+        long start = System.nanoTime();
+        DataGenerator.Scale scale = generator.getScale();
+        long rows = scale.users() + scale.sellers() + scale.games() + scale.transactions();
+        try (Connection conn = writePool.getConnection()) {
+            DataGenerator.Generated generated = generator.generate(conn);
+            metrics.record("generateData", start, rows, true);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("✅ Generated %,d users, %,d sellers, %,d games and %,d transactions in %.1f s (%,.0f rows/sec)%n",
+                    scale.users(), scale.sellers(), scale.games(), scale.transactions(), seconds, rows / seconds);
+            return generated;
         } catch (SQLException e) {
-            System.out.println("❌ Error retrieving users above average spending: " + e.getMessage());
+            metrics.record("generateData", start, 0, false);
+            System.out.println("❌ Error generating data: " + e.getMessage());
+            return null;
+        } finally {
+            gamesChanged(null);
+        }
+    }
+
+    // Export and import. Tables stream to and from CSV or NDJSON files (picked by extension)
+    // without holding more than one row in memory; see DataTransfer for the file formats.
+
+    /**
+     * Writes one table to a .csv or .ndjson file. Returns the number of rows written, or -1 on
+     * failure. With partitioning on, playstoretransaction includes every live month.
+     */
+    public long exportTable(String table, Path file) {
+        long start = System.nanoTime();
+        try (Connection conn = readPool.getConnection()) {
+            String source = partitions != null && table.equals("playstoretransaction") ? "all_transactions" : table;
+            long rows = DataTransfer.export(conn, table, source, file, FETCH_SIZE);
+            metrics.record("exportTable", start, rows, true);
+            return rows;
+        } catch (SQLException | IOException | IllegalArgumentException e) {
+            metrics.record("exportTable", start, 0, false);
+            System.out.println("❌ Error exporting " + table + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /** Inserts the rows of a .csv or .ndjson file into a table in batched transactions. */
+    public BulkIngestResult importTable(String table, Path file) {
+        long start = System.nanoTime();
+        BulkIngestResult result;
+        try {
+            result = DataTransfer.importFile(writePool::getConnection, table, file, DEFAULT_BULK_CHUNK_SIZE);
+        } catch (IOException | IllegalArgumentException e) {
+            result = new BulkIngestResult(0, 0, System.nanoTime() - start, e.getMessage());
+            System.out.println("❌ Error importing " + table + ": " + e.getMessage());
+        }
+        metrics.record("importTable", start, result.rowsCommitted(), result.succeeded());
+        if (table.equals("gamesinfo")) {
+            gamesChanged(null);
+        }
+        return result;
+    }
+
+    /** Exports every table to {@code <directory>/<table><extension>}. Returns false if any export failed. */
+    public boolean exportAll(Path directory, DataTransfer.Format format) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            System.out.println("❌ Error creating " + directory + ": " + e.getMessage());
+            return false;
+        }
+        for (String table : DataTransfer.TABLES) {
+            if (exportTable(table, directory.resolve(table + format.extension())) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Imports every table found as {@code <directory>/<table><extension>}, parents first so
+     * foreign keys resolve. Stops at the first failure and returns false.
+     */
+    public boolean importAll(Path directory, DataTransfer.Format format) {
+        for (String table : DataTransfer.TABLES) {
+            Path file = directory.resolve(table + format.extension());
+            if (!Files.exists(file)) {
+                System.out.println("⚠️ Skipping " + table + ": " + file + " not found");
+                continue;
+            }
+            if (!importTable(table, file).succeeded()) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    // Backups and compaction (see StorageMaintenance). Backups read through the read-only pool,
+    // so they never hold up the writer.
+
+    /**
+     * Copies the live database to {@code destination} in steps of db.backup.pagesPerStep pages.
+     * Each step is recorded as a "backup.step" operation, so the metrics show how long the
+     * longest step held its lock. With partitioning on, the live months are backed up too,
+     * into the backup's own partition directory ({@code <name>-partitions} next to it).
+     * Returns null if the backup failed; the returned Backup describes the main file.
+     */
+    public StorageMaintenance.Backup backup(Path destination) {
+        return backup(destination, BACKUP_PAGES_PER_STEP);
     }
 
-    public void getAllUsersWithTransactions() {
-        String sql = "SELECT u.Username, t.TransactionID, t.PurchaseDate, t.TotalAmount " +
-                    "FROM users u " +
-                    "LEFT JOIN playstoretransaction t ON u.UserID = t.UserID;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                System.out.println("User: " + rs.getString("Username") + 
-                                  " | Transaction ID: " + rs.getInt("TransactionID") +
-                                  " | Purchase Date: " + rs.getString("PurchaseDate") +
-                                  " | Total Amount: $" + rs.getDouble("TotalAmount"));
+    public StorageMaintenance.Backup backup(Path destination, int pagesPerStep) {
+        long start = System.nanoTime();
+        try (Connection conn = readPool.getConnection()) {
+            StorageMaintenance.StepListener steps =
+                    (stepStart, copied, remaining, pageCount) -> metrics.record("backup.step", stepStart, copied, true);
+            StorageMaintenance.Backup backup = StorageMaintenance.backup(conn, destination, pagesPerStep, steps);
+            long pages = backup.pages();
+            List<StorageMaintenance.Backup> months = partitions == null ? List.of() :
+                    TransactionPartitions.backup(conn, TransactionPartitions.directoryFor(destination), pagesPerStep, steps);
+            for (StorageMaintenance.Backup month : months) {
+                pages += month.pages();
+            }
+            metrics.record("backup", start, pages, true);
+            lastBackup = backup;
+            System.out.println("✅ Backup complete: " + backup);
+            for (StorageMaintenance.Backup month : months) {
+                System.out.println("✅ Partition backup complete: " + month);
             }
+            return backup;
+        } catch (SQLException | IOException | IllegalArgumentException e) {
+            metrics.record("backup", start, 0, false);
+            System.out.println("❌ Error backing up database: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a compacted copy of the database to a new file with VACUUM INTO. VACUUM INTO opens
+     * the new file with the source connection's flags, so this cannot use the read-only pool.
+     * With partitioning on, the live months are copied into the snapshot's own partition
+     * directory, which must not hold partition files yet. Returns false on failure.
+     */
+    public boolean snapshot(Path destination) {
+        long start = System.nanoTime();
+        try (Connection conn = openMaintenanceConnection()) {
+            StorageMaintenance.snapshot(conn, destination);
+            List<Path> months = List.of();
+            if (partitions != null) {
+                partitions.sync(conn);
+                months = TransactionPartitions.snapshot(conn, TransactionPartitions.directoryFor(destination));
+            }
+            metrics.record("snapshot", start, 0, true);
+            System.out.printf("✅ Compacted snapshot written to %s (%.1f MB, %.2f s)%n",
+                    destination, Files.size(destination) / (1024.0 * 1024), (System.nanoTime() - start) / 1e9);
+            for (Path month : months) {
+                System.out.printf("✅ Partition snapshot written to %s (%.1f MB)%n", month, Files.size(month) / (1024.0 * 1024));
+            }
+            return true;
+        } catch (SQLException | IOException e) {
+            metrics.record("snapshot", start, 0, false);
+            System.out.println("❌ Error writing snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** The most recent successful backup made by this manager, or null if there has been none. */
+    public StorageMaintenance.Backup getLastBackup() {
+        return lastBackup;
+    }
+
+    /** Page, free-page and file sizes of the database, or null if they could not be read. */
+    public StorageMaintenance.Report getStorageReport() {
+        try (Connection conn = readPool.getConnection()) {
+            return StorageMaintenance.report(conn);
+        } catch (SQLException | IOException e) {
+            System.out.println("❌ Error reading storage report: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns up to {@code maxPages} free pages to the file system now, from main and from
+     * each live partition file. Returns the number freed.
+     */
+    public long incrementalVacuum(int maxPages) {
+        long freed = vacuumStep(maxPages);
+        if (freed >= 0) {
+            System.out.println("✅ Incremental vacuum freed " + freed + " pages!");
+        }
+        return freed;
+    }
+
+    /** One incremental vacuum run, quiet so the scheduler can call it. Returns -1 on failure. */
+    private long vacuumStep(int maxPages) {
+        long start = System.nanoTime();
+        try (Connection conn = writePool.getConnection()) {
+            long freed = 0;
+            for (String schema : databaseSchemas(conn)) {
+                freed += StorageMaintenance.incrementalVacuum(conn, schema, maxPages);
+            }
+            metrics.record("incrementalVacuum", start, freed, true);
+            return freed;
         } catch (SQLException e) {
-            System.out.println("❌ Error retrieving users with transactions: " + e.getMessage());
+            metrics.record("incrementalVacuum", start, 0, false);
+            System.err.println("Incremental vacuum failed: " + e.getMessage());
+            return -1;
         }
     }
 
-    public void getAllSellersWithGames() {
-        String sql = "SELECT s.SellerName, g.GameName " +
-                    "FROM sellerinfo s " +
-                    "RIGHT JOIN gamesinfo g ON s.SellerID = g.SellerID;";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                System.out.println("Seller: " + rs.getString("SellerName") + 
-                                  " | Game: " + rs.getString("GameName"));
+    /**
+     * Switches an existing database to auto_vacuum=INCREMENTAL with a full VACUUM. This rewrites
+     * the whole file and blocks writes until it finishes, so run it in a quiet period. Runs on
+     * a connection of its own: VACUUM refuses to start while the pooled writer still has cached
+     * statements that have not been reset.
+     */
+    public void enableIncrementalVacuum() {
+        long start = System.nanoTime();
+        try (Connection conn = openMaintenanceConnection()) {
+            if (StorageMaintenance.enableIncrementalAutoVacuum(conn)) {
+                metrics.record("enableIncrementalVacuum", start, 0, true);
+                System.out.printf("✅ Database vacuumed and switched to auto_vacuum=INCREMENTAL (%.2f s)%n",
+                        (System.nanoTime() - start) / 1e9);
+            } else {
+                System.out.println("⚠️ Database already uses auto_vacuum=INCREMENTAL");
             }
         } catch (SQLException e) {
-            System.out.println("❌ Error retrieving sellers with games: " + e.getMessage());
+            metrics.record("enableIncrementalVacuum", start, 0, false);
+            System.out.println("❌ Error vacuuming database: " + e.getMessage());
+        }
+    }
+
+    /** A read-write connection outside the pools, for maintenance that should not hold the pooled writer. */
+    private Connection openMaintenanceConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try {
+            profile.apply(conn);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    // Transaction partitions (see TransactionPartitions); only with -Ddb.partitions=true.
+
+    public boolean isPartitioned() {
+        return partitions != null;
+    }
+
+    /** Live and archived transaction partitions, oldest month first. Empty if partitioning is off. */
+    public List<TransactionPartitions.Partition> getTransactionPartitions() {
+        if (partitions == null) {
+            return List.of();
+        }
+        try {
+            return partitions.list();
+        } catch (SQLException | IOException e) {
+            System.out.println("❌ Error listing transaction partitions: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Archives a month (YYYY-MM): its file is compacted into the archive directory and
+     * detached, and the month's transactions drop out of queries until it is restored.
+     * Later transactions for the month go to the main database. Returns the archive file,
+     * or null on failure.
+     */
+    public Path archiveTransactionPartition(String month) {
+        if (partitions == null) {
+            System.out.println("⚠️ Transaction partitioning is off (run with -Ddb.partitions=true)");
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            Path archive = partitions.archive(month, List.of(writePool, readPool));
+            metrics.record("archivePartition", start, 1, true);
+            System.out.printf("✅ Archived %s to %s (%.1f MB, %.2f s)%n", month, archive,
+                    Files.size(archive) / (1024.0 * 1024), (System.nanoTime() - start) / 1e9);
+            return archive;
+        } catch (SQLException | IOException | IllegalArgumentException e) {
+            metrics.record("archivePartition", start, 0, false);
+            System.out.println("❌ Error archiving " + month + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Moves an archived month back into the live partitions. Returns false on failure. */
+    public boolean restoreTransactionPartition(String month) {
+        if (partitions == null) {
+            System.out.println("⚠️ Transaction partitioning is off (run with -Ddb.partitions=true)");
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            partitions.restore(month);
+            metrics.record("restorePartition", start, 1, true);
+            System.out.println("✅ Restored " + month + " to the live transaction partitions!");
+            return true;
+        } catch (SQLException | IOException | IllegalArgumentException | IllegalStateException e) {
+            metrics.record("restorePartition", start, 0, false);
+            System.out.println("❌ Error restoring " + month + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void printStats() {
+        System.out.println(readPool.getStats());
+        System.out.println(writePool.getStats());
+        if (gamesByCategory != null) {
+            System.out.println(gamesByCategory.getStats());
+            System.out.println(gamesById.getStats());
+        }
+        WriteBehindQueue queue;
+        synchronized (this) {
+            queue = writeBehind;
+        }
+        if (queue != null) {
+            System.out.println(queue.getStats());
+        }
+        List<QueryMetrics.Operation> operations = metrics.snapshot();
+        if (!operations.isEmpty()) {
+            System.out.println("Operation latency (ms):");
+            operations.forEach(op -> System.out.println("  " + op));
+        }
+    }
+
+    /** Stats for the read-only pool and the read-write pool, in that order. */
+    public List<ConnectionPool.Stats> getPoolStats() {
+        return List.of(readPool.getStats(), writePool.getStats());
+    }
+
+    /** Latency, call, error and row counts for every operation run so far, sorted by name. */
+    public List<QueryMetrics.Operation> getOperationMetrics() {
+        return metrics.snapshot();
+    }
+
+    public void resetOperationMetrics() {
+        metrics.resetAll();
+    }
+
+    @Override
+    public void close() {
+        if (vacuumScheduler != null) {
+            vacuumScheduler.shutdownNow();
+        }
+        synchronized (this) {
+            if (writeBehind != null) {
+                writeBehind.close();
+                // close() has flushed the queue, so the hook would only keep this manager reachable.
+                try {
+                    Runtime.getRuntime().removeShutdownHook(writeBehindFlush);
+                } catch (IllegalStateException e) {
+                    // Already shutting down: the hook is running or has run.
+                }
+            }
         }
+        readPool.close();
+        writePool.close();
+        metrics.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** A row of gamesinfo. */
+public record Game(int gameID, String gameName, int sellerID, String category, double price,
+                   String developer, int yearPublished) {
+
+    static Game from(ResultSet rs) throws SQLException {
+        return new Game(rs.getInt("GameID"), rs.getString("GameName"), rs.getInt("SellerID"),
+                rs.getString("Category"), rs.getDouble("Price"), rs.getString("Developer"),
+                rs.getInt("YearPublished"));
+    }
+}
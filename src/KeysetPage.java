@@ -0,0 +1,43 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * {@code nextToken} is an opaque continuation token holding the sort key of the last
+ * row on this page; pass it back to fetch the following page. It is null on the last page.
+ * Because the next page is found by seeking the index to that key rather than skipping
+ * rows, every page costs the same however deep into the listing it is.
+ */
+public record KeysetPage<T>(List<T> rows, String nextToken) {
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    /** Encodes a sort key as a token tagged with the listing it belongs to. */
+    static String encodeToken(String listing, String... keyParts) {
+        String raw = listing + "\n" + String.join("\n", keyParts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by encodeToken for the same listing. The last key part
+     * may itself contain newlines (e.g. a free-text username).
+     */
+    static String[] decodeToken(String listing, String token, int keyParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] fields = raw.split("\n", keyParts + 1);
+            if (fields.length != keyParts + 1 || !fields[0].equals(listing)) {
+                throw new IllegalArgumentException("Page token does not belong to the " + listing + " listing");
+            }
+            String[] key = new String[keyParts];
+            System.arraycopy(fields, 1, key, 0, keyParts);
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + e.getMessage(), e);
+        }
+    }
+}
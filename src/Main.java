@@ -1,11 +1,24 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class Main {
-    private static final DatabaseManager db = new DatabaseManager();
+    private static DatabaseManager db;
     private static Scanner scanner;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer();
+            return;
+        }
+
         System.out.println("=====================");
         System.out.println("E-Games: Digital Game Marketplace");
         System.out.println("=====================");
@@ -22,7 +35,13 @@ public class Main {
                     case 3 -> updateOperations();
                     case 4 -> deleteOperations();
                     case 5 -> advancedQueries();
+                    case 6 -> db().printStats();
+                    case 7 -> importExport();
+                    case 8 -> backupAndMaintenance();
                     case 0 -> {
+                        if (db != null) {
+                            db.close();
+                        }
                         System.out.println("Exiting the system. Goodbye!");
                         return;
                     }
@@ -32,6 +51,28 @@ public class Main {
         }
     }
 
+    /**
+     * Opens the database on first use rather than in a static initializer, so the menu
+     * appears (and scripted runs that exit early finish) without touching the file.
+     */
+    private static DatabaseManager db() {
+        if (db == null) {
+            db = new DatabaseManager();
+        }
+        return db;
+    }
+
+    /** Serves the marketplace over HTTP until the JVM is stopped (Ctrl+C). */
+    private static void runServer() throws IOException {
+        MarketplaceServer server = new MarketplaceServer(db(), Integer.getInteger("server.port", 8080));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            db().close();
+            System.out.println("Server stopped. Goodbye!");
+        }, "marketplace-server-shutdown"));
+        server.start();
+    }
+
     private static void displayMainMenu() {
         System.out.println("\n=== MAIN MENU ===");
         System.out.println("1. Create Operations (Add data)");
@@ -39,6 +80,9 @@ public class Main {
         System.out.println("3. Update Operations");
         System.out.println("4. Delete Operations");
         System.out.println("5. Advanced Queries");
+        System.out.println("6. Performance Statistics");
+        System.out.println("7. Import / Export Data");
+        System.out.println("8. Backup & Maintenance");
         System.out.println("0. Exit");
     }
 
@@ -49,6 +93,7 @@ public class Main {
             System.out.println("2. Add Seller");
             System.out.println("3. Add Game");
             System.out.println("4. Add Transaction");
+            System.out.println("5. Purchase Game (Catalog Price)");
             System.out.println("0. Back to Main Menu");
             
             int choice = getIntInput("Enter your choice: ");
@@ -58,6 +103,7 @@ public class Main {
                 case 2 -> addSeller();
                 case 3 -> addGame();
                 case 4 -> addTransaction();
+                case 5 -> purchaseGame();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice! Please try again.");
             }
@@ -71,7 +117,7 @@ public class Main {
         String email = getStringInput("Enter Email: ");
         String password = getStringInput("Enter Password: ");
         
-        db.addUser(userType, username, email, password);
+        db().addUser(userType, username, email, password);
     }
 
     private static void addSeller() {
@@ -79,7 +125,7 @@ public class Main {
         String sellerName = getStringInput("Enter Seller Name: ");
         String contactInfo = getStringInput("Enter Contact Info: ");
         
-        db.addSeller(sellerName, contactInfo);
+        db().addSeller(sellerName, contactInfo);
     }
 
     private static void addGame() {
@@ -91,7 +137,7 @@ public class Main {
         String developer = getStringInput("Enter Developer: ");
         int yearPublished = getIntInput("Enter Year Published: ");
         
-        db.addGame(gameName, sellerID, category, price, developer, yearPublished);
+        db().addGame(gameName, sellerID, category, price, developer, yearPublished);
     }
 
     private static void addTransaction() {
@@ -101,7 +147,22 @@ public class Main {
         String purchaseDate = getStringInput("Enter Purchase Date (YYYY-MM-DD): ");
         double totalAmount = getDoubleInput("Enter Total Amount: ");
         
-        db.addTransaction(userID, gameID, purchaseDate, totalAmount);
+        db().addTransaction(userID, gameID, purchaseDate, totalAmount);
+    }
+
+    private static void purchaseGame() {
+        System.out.println("\n--- Purchase Game ---");
+        int userID = getIntInput("Enter User ID: ");
+        int gameID = getIntInput("Enter Game ID: ");
+
+        try {
+            Purchase purchase = db().purchaseGame(userID, gameID);
+            System.out.println("✅ Purchase complete! Transaction ID: " + purchase.transactionID() +
+                               " | Date: " + purchase.purchaseDate() +
+                               " | Total Amount: $" + purchase.totalAmount());
+        } catch (IllegalArgumentException | DatabaseException e) {
+            System.out.println("❌ Error purchasing game: " + e.getMessage());
+        }
     }
 
     private static void readOperations() {
@@ -110,23 +171,78 @@ public class Main {
             System.out.println("1. View All Users (Sorted by Username)");
             System.out.println("2. View Games by Category");
             System.out.println("3. View Sellers with Games Count");
+            System.out.println("4. Browse Users (Paged)");
+            System.out.println("5. Browse Users with Transactions (Paged)");
+            System.out.println("6. Search Games (Name, Developer, Category)");
             System.out.println("0. Back to Main Menu");
             
             int choice = getIntInput("Enter your choice: ");
             
             switch (choice) {
-                case 1 -> db.getUsersSortedByUsername();
+                case 1 -> printRows("users", db()::streamUsersSortedByUsername,
+                        u -> "ID: " + u.userID() +
+                             ", Username: " + u.username() +
+                             ", Email: " + u.email());
                 case 2 -> {
                     String category = getStringInput("Enter Category Name: ");
-                    db.getGamesByCategory(category);
+                    System.out.println("Games in category: " + category);
+                    printRows("games by category", () -> db().streamGamesByCategory(category),
+                            g -> "Game: " + g.gameName() +
+                                 " | Price: $" + g.price() +
+                                 " | Developer: " + g.developer() +
+                                 " | Year: " + g.yearPublished());
                 }
-                case 3 -> db.getSellersWithGames();
+                case 3 -> printRows("sellers", db()::streamSellersWithGames,
+                        s -> "Seller: " + s.sellerName() +
+                             " | Games Available: " + s.gameCount());
+                case 4 -> browsePages("users", db()::getUsersSortedByUsername,
+                        u -> "ID: " + u.userID() +
+                             ", Username: " + u.username() +
+                             ", Email: " + u.email());
+                case 5 -> browsePages("users with transactions", db()::getAllUsersWithTransactions,
+                        t -> "User: " + t.username() +
+                             " | Transaction ID: " + Objects.requireNonNullElse(t.transactionID(), 0) +
+                             " | Purchase Date: " + t.purchaseDate() +
+                             " | Total Amount: $" + Objects.requireNonNullElse(t.totalAmount(), 0.0));
+                case 6 -> searchGames();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice! Please try again.");
             }
         }
     }
 
+    /** Shows ranked search results ten at a time until the user stops or they run out. */
+    private static void searchGames() {
+        String text = getStringInput("Search for: ");
+        int pageSize = 10;
+        for (int page = 0; ; page++) {
+            List<Game> games;
+            try {
+                games = db().searchGames(text, page, pageSize);
+            } catch (IllegalArgumentException | DatabaseException e) {
+                System.out.println("❌ Error searching games: " + e.getMessage());
+                return;
+            }
+            if (games.isEmpty()) {
+                System.out.println(page == 0 ? "No games match '" + text + "'." : "--- End of results ---");
+                return;
+            }
+            System.out.println("--- Results " + (page * pageSize + 1) + "-" + (page * pageSize + games.size()) + " ---");
+            games.forEach(g -> System.out.println("Game: " + g.gameName() +
+                                                  " | Category: " + g.category() +
+                                                  " | Price: $" + g.price() +
+                                                  " | Developer: " + g.developer() +
+                                                  " | Year: " + g.yearPublished()));
+            if (games.size() < pageSize) {
+                System.out.println("--- End of results ---");
+                return;
+            }
+            if (getStringInput("Press Enter for more results, or q to stop: ").equalsIgnoreCase("q")) {
+                return;
+            }
+        }
+    }
+
     private static void updateOperations() {
         while (true) {
             System.out.println("\n=== UPDATE OPERATIONS ===");
@@ -139,7 +255,7 @@ public class Main {
                 case 1 -> {
                     int userID = getIntInput("Enter User ID to update: ");
                     String newEmail = getStringInput("Enter New Email: ");
-                    db.updateUserEmail(userID, newEmail);
+                    db().updateUserEmail(userID, newEmail);
                 }
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice! Please try again.");
@@ -161,7 +277,7 @@ public class Main {
                     int userID = getIntInput("Enter User ID to delete: ");
                     String confirm = getStringInput("Are you sure? (y/n): ");
                     if (confirm.equalsIgnoreCase("y")) {
-                        db.deleteUser(userID);
+                        db().deleteUser(userID);
                     } else {
                         System.out.println("Delete operation cancelled.");
                     }
@@ -172,6 +288,97 @@ public class Main {
         }
     }
 
+    private static void importExport() {
+        while (true) {
+            System.out.println("\n=== IMPORT / EXPORT (CSV or NDJSON) ===");
+            System.out.println("1. Export Table to File");
+            System.out.println("2. Import Table from File");
+            System.out.println("3. Export All Tables to Directory");
+            System.out.println("4. Import All Tables from Directory");
+            System.out.println("0. Back to Main Menu");
+
+            int choice = getIntInput("Enter your choice: ");
+
+            switch (choice) {
+                case 1 -> db().exportTable(getTableInput(), Path.of(getStringInput("Enter file path (.csv or .ndjson): ")));
+                case 2 -> db().importTable(getTableInput(), Path.of(getStringInput("Enter file path (.csv or .ndjson): ")));
+                case 3 -> {
+                    Path directory = Path.of(getStringInput("Enter directory: "));
+                    DataTransfer.Format format = getFormatInput();
+                    if (format != null && db().exportAll(directory, format)) {
+                        System.out.println("✅ All tables exported to " + directory + "!");
+                    }
+                }
+                case 4 -> {
+                    Path directory = Path.of(getStringInput("Enter directory: "));
+                    DataTransfer.Format format = getFormatInput();
+                    if (format != null && db().importAll(directory, format)) {
+                        System.out.println("✅ All tables imported from " + directory + "!");
+                    }
+                }
+                case 0 -> { return; }
+                default -> System.out.println("Invalid choice! Please try again.");
+            }
+        }
+    }
+
+    private static void backupAndMaintenance() {
+        while (true) {
+            System.out.println("\n=== BACKUP & MAINTENANCE ===");
+            System.out.println("1. Storage Report (Size and Free Pages)");
+            System.out.println("2. Online Backup");
+            System.out.println("3. Compacted Snapshot (VACUUM INTO)");
+            System.out.println("4. Run Incremental Vacuum Now");
+            System.out.println("5. Enable Incremental Auto-Vacuum (Full VACUUM)");
+            System.out.println("6. List Transaction Partitions");
+            System.out.println("7. Archive Transaction Partition");
+            System.out.println("8. Restore Archived Transaction Partition");
+            System.out.println("0. Back to Main Menu");
+
+            int choice = getIntInput("Enter your choice: ");
+
+            switch (choice) {
+                case 1 -> {
+                    StorageMaintenance.Report report = db().getStorageReport();
+                    if (report != null) {
+                        System.out.println(report);
+                    }
+                }
+                case 2 -> db().backup(Path.of(getStringInput("Enter backup file path: ")));
+                case 3 -> db().snapshot(Path.of(getStringInput("Enter snapshot file path (must not exist): ")));
+                case 4 -> db().incrementalVacuum(getIntInput("Maximum pages to free: "));
+                case 5 -> db().enableIncrementalVacuum();
+                case 6 -> {
+                    if (!db().isPartitioned()) {
+                        System.out.println("⚠️ Transaction partitioning is off (run with -Ddb.partitions=true)");
+                    } else if (db().getTransactionPartitions().isEmpty()) {
+                        System.out.println("No transaction partitions yet.");
+                    } else {
+                        db().getTransactionPartitions().forEach(System.out::println);
+                    }
+                }
+                case 7 -> db().archiveTransactionPartition(getStringInput("Enter month to archive (YYYY-MM): ").trim());
+                case 8 -> db().restoreTransactionPartition(getStringInput("Enter month to restore (YYYY-MM): ").trim());
+                case 0 -> { return; }
+                default -> System.out.println("Invalid choice! Please try again.");
+            }
+        }
+    }
+
+    private static String getTableInput() {
+        return getStringInput("Enter table " + DataTransfer.TABLES + ": ").trim();
+    }
+
+    private static DataTransfer.Format getFormatInput() {
+        String format = getStringInput("Enter format (csv/ndjson): ").trim();
+        try {
+            return DataTransfer.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("❌ Unknown format: " + format);
+            return null;
+        }
+    }
+
     private static void advancedQueries() {
         while (true) {
             System.out.println("\n=== ADVANCED QUERIES ===");
@@ -179,21 +386,137 @@ public class Main {
             System.out.println("2. Users Above Average Spending (Subquery + Aggregate: AVG)");
             System.out.println("3. All Users With Transactions (LEFT JOIN)");
             System.out.println("4. All Sellers With Games (RIGHT JOIN)");
+            System.out.println("5. Verify Spending Summary Against Full Recompute");
+            System.out.println("6. Rebuild Game Search Index");
+            System.out.println("7. Sales Reports (In-Memory Analytics)");
             System.out.println("0. Back to Main Menu");
             
             int choice = getIntInput("Enter your choice: ");
             
             switch (choice) {
-                case 1 -> db.getTotalSpendingPerUser();
-                case 2 -> db.getUsersAboveAverageSpending();
-                case 3 -> db.getAllUsersWithTransactions();
-                case 4 -> db.getAllSellersWithGames();
+                case 1 -> printRows("spending", db()::streamTotalSpendingPerUser,
+                        u -> "User: " + u.username() +
+                             " | Total Spent: $" + u.totalSpent());
+                case 2 -> printRows("users above average spending", db()::streamUsersAboveAverageSpending,
+                        u -> "User: " + u.username() +
+                             " | Total Spent: $" + u.totalSpent());
+                case 3 -> printRows("users with transactions", db()::streamAllUsersWithTransactions,
+                        t -> "User: " + t.username() +
+                             " | Transaction ID: " + Objects.requireNonNullElse(t.transactionID(), 0) +
+                             " | Purchase Date: " + t.purchaseDate() +
+                             " | Total Amount: $" + Objects.requireNonNullElse(t.totalAmount(), 0.0));
+                case 4 -> printRows("sellers with games", db()::streamAllSellersWithGames,
+                        s -> "Seller: " + s.sellerName() +
+                             " | Game: " + s.gameName());
+                case 5 -> {
+                    if (!db().verifySpendingSummary()
+                            && getStringInput("Rebuild the summary from scratch? (y/n): ").equalsIgnoreCase("y")) {
+                        db().rebuildSpendingSummary();
+                    }
+                }
+                case 6 -> db().rebuildGameSearchIndex();
+                case 7 -> salesReports();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice! Please try again.");
             }
         }
     }
 
+    private static void salesReports() {
+        while (true) {
+            System.out.println("\n=== SALES REPORTS ===");
+            System.out.println("1. Revenue by Category");
+            System.out.println("2. Revenue by Seller (Top 20)");
+            System.out.println("3. Revenue by Month");
+            System.out.println("4. Top Games by Revenue");
+            System.out.println("5. Rolling Revenue (Last 30 Days)");
+            System.out.println("6. Reload Snapshot from Scratch");
+            System.out.println("0. Back to Advanced Queries");
+
+            int choice = getIntInput("Enter your choice: ");
+            if (choice == 0) {
+                return;
+            }
+            if (choice < 1 || choice > 6) {
+                System.out.println("Invalid choice! Please try again.");
+                continue;
+            }
+            // Picks up transactions added since the last report; cheap when nothing changed.
+            SalesAnalytics analytics = db().refreshSalesAnalytics(choice == 6);
+            if (analytics == null) {
+                continue;
+            }
+            switch (choice) {
+                case 1 -> printRevenue(analytics.revenueByCategory(), "Category");
+                case 2 -> printRevenue(analytics.topSellers(20), "Seller");
+                case 3 -> printRevenue(analytics.revenueByMonth(), "Month");
+                case 4 -> printRevenue(analytics.topGames(getIntInput("How many games? ")), "Game");
+                case 5 -> {
+                    int window = getIntInput("Window size in days: ");
+                    if (window < 1) {
+                        System.out.println("Window must be at least 1 day.");
+                        continue;
+                    }
+                    List<SalesAnalytics.DailyRevenue> days = analytics.rollingRevenue(window);
+                    days.subList(Math.max(0, days.size() - 30), days.size()).forEach(d ->
+                            System.out.printf("%s | Revenue: $%,.2f | Last %d days: $%,.2f%n",
+                                    d.date(), d.revenue(), window, d.windowRevenue()));
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private static void printRevenue(List<SalesAnalytics.Revenue> rows, String label) {
+        if (rows.isEmpty()) {
+            System.out.println("No transactions yet.");
+        }
+        rows.forEach(r -> System.out.printf("%s: %s | Transactions: %,d | Revenue: $%,.2f%n",
+                label, r.name(), r.transactions(), r.revenue()));
+    }
+
+    /** Prints each row of a query as it is read, without buffering the result. */
+    private static <T> void printRows(String what, Supplier<Stream<T>> query, Function<T, String> format) {
+        try (Stream<T> rows = query.get()) {
+            rows.map(format).forEach(System.out::println);
+        } catch (DatabaseException e) {
+            System.out.println("❌ Error retrieving " + what + ": " + e.getMessage());
+        }
+    }
+
+    /** Shows a keyset-paginated listing one page at a time until the user stops or it runs out. */
+    private static <T> void browsePages(String what, BiFunction<String, Integer, KeysetPage<T>> fetch,
+                                        Function<T, String> format) {
+        int pageSize = getIntInput("Enter page size: ");
+        if (pageSize < 1) {
+            System.out.println("Page size must be at least 1.");
+            return;
+        }
+        String token = null;
+        int pageNumber = 1;
+        while (true) {
+            KeysetPage<T> page;
+            try {
+                page = fetch.apply(token, pageSize);
+            } catch (DatabaseException e) {
+                System.out.println("❌ Error retrieving " + what + ": " + e.getMessage());
+                return;
+            }
+            System.out.println("--- Page " + pageNumber + " ---");
+            page.rows().stream().map(format).forEach(System.out::println);
+            if (!page.hasNext()) {
+                System.out.println("--- End of " + what + " ---");
+                return;
+            }
+            String next = getStringInput("Press Enter for the next page, or q to stop: ");
+            if (next.equalsIgnoreCase("q")) {
+                return;
+            }
+            token = page.nextToken();
+            pageNumber++;
+        }
+    }
+
     private static String getStringInput(String prompt) {
         System.out.print(prompt);
         return scanner.nextLine();
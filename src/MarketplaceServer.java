@@ -0,0 +1,364 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless HTTP/JSON front end for DatabaseManager, listening on localhost.
+ *
+ * Every request runs on its own virtual thread, so thousands of idle or slow
+ * clients cost almost nothing. Reads go straight to the read-only connection pool
+ * and run in parallel (WAL lets readers proceed while a write commits). Writes are submitted
+ * to the write-behind queue, whose single writer thread serializes them and
+ * group-commits whatever has accumulated; a write request returns once its row is
+ * committed.
+ *
+ * Endpoints (parameters come from the query string or a form-encoded body):
+ *   GET    /users?pageToken=&pageSize=                 users by username (keyset pages)
+ *   GET    /users/transactions?pageToken=&pageSize=    users with their transactions (keyset pages)
+ *   GET    /games?category=[&page=&pageSize=]          games in a category
+ *   GET    /games/search?q=[&page=&pageSize=]          full-text game search, best matches first
+ *   GET    /games/{id}                                 one game
+ *   GET    /sellers?page=&pageSize=                    sellers with game counts
+ *   GET    /sellers/games?page=&pageSize=              sellers with their games
+ *   GET    /spending?page=&pageSize=                   total spending per user
+ *   GET    /spending/above-average?page=&pageSize=     users above average spending
+ *   GET    /stats                                      pool and per-operation metrics, storage sizes
+ *   POST   /users        userType, username, email, password
+ *   POST   /sellers      sellerName, contactInfo
+ *   POST   /games        gameName, sellerID, category, price, developer, yearPublished
+ *   POST   /transactions userID, gameID, purchaseDate, totalAmount
+ *   POST   /purchases    userID, gameID (charged the catalog price; responds with the purchase)
+ *   PUT    /users/{id}/email  email
+ *   DELETE /users/{id}
+ */
+public class MarketplaceServer implements AutoCloseable {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1_000;
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    private record Response(int status, Object body) {
+    }
+
+    /** Ends a request early with the given HTTP status and message. */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final DatabaseManager db;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Binds to the loopback interface and switches the manager to write-behind mode,
+     * which is what serializes writes. Call start() to begin serving.
+     */
+    public MarketplaceServer(DatabaseManager db, int port) throws IOException {
+        this.db = db;
+        db.enableWriteBehind();
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("✅ Marketplace server listening on http://" + server.getAddress().getHostString() +
+                           ":" + getPort() + "/");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests and waits up to a second for in-flight ones to finish. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                response = route(exchange.getRequestMethod(), pathSegments(exchange), params(exchange));
+            } catch (HttpError e) {
+                response = error(e.status, e.getMessage());
+            } catch (NumberFormatException e) {
+                response = error(400, "Invalid number: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (DatabaseException e) {
+                response = error(500, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            } catch (RuntimeException e) {
+                // A bug, not a bad request: log it here rather than let HttpServer drop the connection.
+                System.err.println("❌ " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed: " + e);
+                e.printStackTrace();
+                response = error(500, "Internal server error");
+            }
+            send(exchange, response);
+        }
+    }
+
+    private Response route(String method, String[] path, Map<String, String> params) {
+        String resource = path.length > 0 ? path[0] : "";
+        String sub = path.length > 1 ? path[1] : null;
+        switch (method + " " + resource) {
+            case "GET users" -> {
+                if (sub == null) {
+                    return ok(db.getUsersSortedByUsername(params.get("pageToken"), pageSize(params)));
+                }
+                if (sub.equals("transactions") && path.length == 2) {
+                    return ok(db.getAllUsersWithTransactions(params.get("pageToken"), pageSize(params)));
+                }
+            }
+            case "GET games" -> {
+                if (sub == null) {
+                    String category = required(params, "category");
+                    return ok(params.containsKey("page")
+                            ? db.getGamesByCategory(category, page(params), pageSize(params))
+                            : db.getGamesByCategory(category));
+                }
+                if (sub.equals("search") && path.length == 2) {
+                    return ok(db.searchGames(required(params, "q"), page(params), pageSize(params)));
+                }
+                if (path.length == 2) {
+                    return db.getGameById(Integer.parseInt(sub))
+                            .map(MarketplaceServer::ok)
+                            .orElseGet(() -> error(404, "No game with ID " + sub));
+                }
+            }
+            case "GET sellers" -> {
+                if (sub == null) {
+                    return ok(db.getSellersWithGames(page(params), pageSize(params)));
+                }
+                if (sub.equals("games") && path.length == 2) {
+                    return ok(db.getAllSellersWithGames(page(params), pageSize(params)));
+                }
+            }
+            case "GET spending" -> {
+                if (sub == null) {
+                    return ok(db.getTotalSpendingPerUser(page(params), pageSize(params)));
+                }
+                if (sub.equals("above-average") && path.length == 2) {
+                    return ok(db.getUsersAboveAverageSpending(page(params), pageSize(params)));
+                }
+            }
+            case "GET stats" -> {
+                if (sub == null) {
+                    return ok(stats());
+                }
+            }
+            case "POST users" -> {
+                if (sub == null) {
+                    return created(db.addUserAsync(required(params, "userType"), required(params, "username"),
+                            params.get("email"), required(params, "password")));
+                }
+            }
+            case "POST sellers" -> {
+                if (sub == null) {
+                    return created(db.addSellerAsync(required(params, "sellerName"), params.get("contactInfo")));
+                }
+            }
+            case "POST games" -> {
+                if (sub == null) {
+                    return created(db.addGameAsync(required(params, "gameName"),
+                            Integer.parseInt(required(params, "sellerID")), params.get("category"),
+                            Double.parseDouble(required(params, "price")), params.get("developer"),
+                            Integer.parseInt(required(params, "yearPublished"))));
+                }
+            }
+            case "POST transactions" -> {
+                if (sub == null) {
+                    return created(db.addTransactionAsync(Integer.parseInt(required(params, "userID")),
+                            Integer.parseInt(required(params, "gameID")), required(params, "purchaseDate"),
+                            Double.parseDouble(required(params, "totalAmount"))));
+                }
+            }
+            case "POST purchases" -> {
+                if (sub == null) {
+                    // Runs on this request's thread in its own short transaction, not through the queue,
+                    // because the caller needs the committed row back.
+                    return new Response(201, db.purchaseGame(Integer.parseInt(required(params, "userID")),
+                            Integer.parseInt(required(params, "gameID"))));
+                }
+            }
+            case "PUT users" -> {
+                if (sub != null && path.length == 3 && path[2].equals("email")) {
+                    return noContent(db.updateUserEmailAsync(Integer.parseInt(sub), required(params, "email")));
+                }
+            }
+            case "DELETE users" -> {
+                if (sub != null && path.length == 2) {
+                    return noContent(db.deleteUserAsync(Integer.parseInt(sub)));
+                }
+            }
+            default -> {
+            }
+        }
+        throw new HttpError(404, "No route for " + method + " /" + String.join("/", path));
+    }
+
+    private Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pools", db.getPoolStats());
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (QueryMetrics.Operation op : db.getOperationMetrics()) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("calls", op.getCalls());
+            metrics.put("errors", op.getErrors());
+            metrics.put("rows", op.getRows());
+            metrics.put("meanMillis", op.getMeanMillis());
+            metrics.put("p50Millis", op.getP50Millis());
+            metrics.put("p99Millis", op.getP99Millis());
+            metrics.put("p999Millis", op.getP999Millis());
+            metrics.put("maxMillis", op.getMaxMillis());
+            operations.put(op.getName(), metrics);
+        }
+        stats.put("operations", operations);
+        StorageMaintenance.Report report = db.getStorageReport();
+        if (report != null) {
+            Map<String, Object> storage = new LinkedHashMap<>();
+            storage.put("file", report.file().toString());
+            storage.put("pageSize", report.pageSize());
+            storage.put("pageCount", report.pageCount());
+            storage.put("freePages", report.freePages());
+            storage.put("freePercent", report.freePercent());
+            storage.put("autoVacuum", report.autoVacuum());
+            storage.put("fileBytes", report.fileBytes());
+            storage.put("walBytes", report.walBytes());
+            stats.put("storage", storage);
+        }
+        StorageMaintenance.Backup backup = db.getLastBackup();
+        if (backup != null) {
+            Map<String, Object> lastBackup = new LinkedHashMap<>();
+            lastBackup.put("file", backup.file().toString());
+            lastBackup.put("pages", backup.pages());
+            lastBackup.put("steps", backup.steps());
+            lastBackup.put("restarts", backup.restarts());
+            lastBackup.put("seconds", backup.elapsedNanos() / 1e9);
+            lastBackup.put("megabytesPerSecond", backup.megabytesPerSecond());
+            lastBackup.put("maxStepMillis", backup.maxStepNanos() / 1e6);
+            stats.put("lastBackup", lastBackup);
+        }
+        return stats;
+    }
+
+    private static Response ok(Object body) {
+        return new Response(200, body);
+    }
+
+    private static Response created(CompletableFuture<Void> write) {
+        await(write);
+        return new Response(201, null);
+    }
+
+    private static Response noContent(CompletableFuture<Void> write) {
+        await(write);
+        return new Response(204, null);
+    }
+
+    /** Waits for a queued write to commit, mapping its failure to an HTTP status. */
+    private static void await(CompletableFuture<Void> write) {
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) {
+                throw new HttpError(sql.getErrorCode() == SQLITE_CONSTRAINT ? 409 : 500, sql.getMessage());
+            }
+            throw new HttpError(503, String.valueOf(cause.getMessage()));
+        }
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Map.of("error", String.valueOf(message)));
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new HttpError(400, "Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int page(Map<String, String> params) {
+        int page = Integer.parseInt(params.getOrDefault("page", "0"));
+        if (page < 0) {
+            throw new HttpError(400, "page must not be negative");
+        }
+        return page;
+    }
+
+    private static int pageSize(Map<String, String> params) {
+        int size = Integer.parseInt(params.getOrDefault("pageSize", String.valueOf(DEFAULT_PAGE_SIZE)));
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new HttpError(400, "pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
+
+    private static String[] pathSegments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return Arrays.stream(path.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String encoded, Map<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        if (response.body() == null) {
+            exchange.sendResponseHeaders(response.status(), -1);
+            return;
+        }
+        byte[] body = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Named sets of PRAGMA settings applied to every pooled connection.
+ *
+ * Both presets use WAL so readers no longer block the writer; they differ in how
+ * hard they push for durability versus speed. Any single setting can be overridden
+ * with a system property, e.g. -Ddb.pragma.cache_size=-131072.
+ *
+ * Read-only connections get the same cache and mmap settings but skip journal_mode
+ * (it is stored in the database file and set by the writer) and add query_only, so
+ * a stray write on the read side fails instead of taking the write lock.
+ */
+public enum PragmaProfile {
+
+    /** WAL with a full fsync on every commit: no committed transaction is lost on power failure. */
+    DURABLE(Map.of(
+            "synchronous", "FULL",
+            "cache_size", "-16384",
+            "mmap_size", "0")),
+
+    /** WAL with fsync only at checkpoints, a large page cache and memory-mapped reads. */
+    THROUGHPUT(Map.of(
+            "synchronous", "NORMAL",
+            "cache_size", "-65536",
+            "mmap_size", "268435456"));
+
+    // Settings shared by every profile, applied first.
+    private static final Map<String, String> COMMON = Map.of(
+            "journal_mode", "WAL",
+            "foreign_keys", "ON",
+            "temp_store", "MEMORY",
+            "busy_timeout", "5000");
+
+    private static final String[] ORDER = {
+            "journal_mode", "synchronous", "foreign_keys", "cache_size", "mmap_size", "temp_store", "busy_timeout"
+    };
+
+    private final Map<String, String> specific;
+
+    PragmaProfile(Map<String, String> specific) {
+        this.specific = specific;
+    }
+
+    /** Looks a profile up by name, case-insensitively. */
+    public static PragmaProfile named(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown PRAGMA profile '" + name + "' (expected durable or throughput)");
+        }
+    }
+
+    /** The settings this profile applies, in order, with system property overrides resolved. */
+    public Map<String, String> settings() {
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (String name : ORDER) {
+            String value = specific.containsKey(name) ? specific.get(name) : COMMON.get(name);
+            merged.put(name, System.getProperty("db.pragma." + name, value));
+        }
+        return merged;
+    }
+
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> setting : settings().entrySet()) {
+                stmt.execute("PRAGMA " + setting.getKey() + " = " + setting.getValue() + ";");
+            }
+        }
+    }
+
+    public void applyReadOnly(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> setting : settings().entrySet()) {
+                if (!setting.getKey().equals("journal_mode")) {
+                    stmt.execute("PRAGMA " + setting.getKey() + " = " + setting.getValue() + ";");
+                }
+            }
+            stmt.execute("PRAGMA query_only = ON;");
+        }
+    }
+
+    /** Reads back the value SQLite actually uses for each setting in this profile. */
+    public Map<String, String> effectiveSettings(Connection conn) throws SQLException {
+        Map<String, String> effective = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            for (String name : settings().keySet()) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + name + ";")) {
+                    effective.put(name, rs.next() ? rs.getString(1) : "?");
+                }
+            }
+        }
+        return effective;
+    }
+}
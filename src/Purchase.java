@@ -0,0 +1,7 @@
+/**
+ * A completed purchase: the transaction row written by DatabaseManager.purchaseGame.
+ * sellerID is null for games without a seller.
+ */
+public record Purchase(long transactionID, int userID, int gameID, Integer sellerID, String purchaseDate,
+                       double totalAmount) {
+}
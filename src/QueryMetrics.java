@@ -0,0 +1,201 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Per-operation call counts, errors, rows and latency histograms.
+ *
+ * Recording is a map lookup plus a few atomic increments, cheap enough to leave on
+ * for every call. Calls slower than the slow-query threshold are logged to stderr.
+ * When JMX is enabled each operation is also published as an MBean named
+ * {@code CTINFMGL:type=QueryMetrics,db=<url>,operation=<name>}, so the numbers can be
+ * read with jconsole or any JMX client.
+ */
+public class QueryMetrics implements AutoCloseable {
+
+    /** Read-only JMX view of one operation's metrics. */
+    public interface OperationMBean {
+        long getCalls();
+        long getErrors();
+        long getRows();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+        void reset();
+    }
+
+    /** Metrics for a single named operation. */
+    public static final class Operation implements OperationMBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCalls() {
+            return calls.get();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.get();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.get();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return latency.getMeanNanos() / 1_000_000.0;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return latency.getPercentileNanos(50) / 1_000_000.0;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return latency.getPercentileNanos(99) / 1_000_000.0;
+        }
+
+        @Override
+        public double getP999Millis() {
+            return latency.getPercentileNanos(99.9) / 1_000_000.0;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return latency.getMaxNanos() / 1_000_000.0;
+        }
+
+        @Override
+        public void reset() {
+            latency.reset();
+            calls.set(0);
+            errors.set(0);
+            rows.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-34s %8d calls %5d errors %10d rows | mean %8.3f | p50 %8.3f | p99 %8.3f | " +
+                                 "p99.9 %8.3f | max %8.3f ms",
+                    name, getCalls(), getErrors(), getRows(), getMeanMillis(), getP50Millis(),
+                    getP99Millis(), getP999Millis(), getMaxMillis());
+        }
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final long slowThresholdNanos;
+    private final String jmxDomain;
+    private final MBeanServer mbeanServer;
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile boolean logFirstOperation;
+    private final AtomicBoolean firstOperationLogged = new AtomicBoolean();
+
+    /**
+     * @param slowQueryMillis calls at least this slow are logged; 0 or less disables the log
+     * @param jmxScope        value for the {@code db} key of the MBean names, or null to skip JMX
+     */
+    public QueryMetrics(long slowQueryMillis, String jmxScope) {
+        this.slowThresholdNanos = slowQueryMillis > 0 ? slowQueryMillis * 1_000_000L : Long.MAX_VALUE;
+        this.jmxDomain = jmxScope == null ? null : "CTINFMGL:type=QueryMetrics,db=" + ObjectName.quote(jmxScope);
+        this.mbeanServer = jmxScope == null ? null : ManagementFactory.getPlatformMBeanServer();
+    }
+
+    /** Records one call that started at {@code startNanos} (from System.nanoTime()). */
+    public void record(String operation, long startNanos, long rows, boolean success) {
+        long elapsed = System.nanoTime() - startNanos;
+        Operation op = operations.computeIfAbsent(operation, this::create);
+        op.latency.record(elapsed);
+        op.calls.incrementAndGet();
+        op.rows.addAndGet(rows);
+        if (!success) {
+            op.errors.incrementAndGet();
+        }
+        if (logFirstOperation && firstOperationLogged.compareAndSet(false, true)) {
+            logFirstOperation(operation);
+        }
+        if (elapsed >= slowThresholdNanos) {
+            System.err.printf("⚠️ Slow query: %s took %.1f ms (%d rows%s)%n",
+                    operation, elapsed / 1_000_000.0, rows, success ? "" : ", failed");
+        }
+    }
+
+    /** Logs, once, how long after the JVM started the first operation finished (start-up cost). */
+    public void logTimeToFirstOperation() {
+        logFirstOperation = true;
+    }
+
+    private static void logFirstOperation(String operation) {
+        // Read the clock before the management classes load, so their cost is not counted.
+        long now = System.currentTimeMillis();
+        System.err.printf("⏱️ First operation (%s) finished %d ms after JVM start%n",
+                operation, now - ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    private Operation create(String name) {
+        Operation op = new Operation(name);
+        if (mbeanServer != null) {
+            try {
+                ObjectName objectName = new ObjectName(jmxDomain + ",operation=" + ObjectName.quote(name));
+                if (!mbeanServer.isRegistered(objectName)) {
+                    mbeanServer.registerMBean(new StandardMBean(op, OperationMBean.class), objectName);
+                    synchronized (registered) {
+                        registered.add(objectName);
+                    }
+                }
+            } catch (JMException e) {
+                System.err.println("Could not register JMX metrics for " + name + ": " + e.getMessage());
+            }
+        }
+        return op;
+    }
+
+    /** Current metrics for every operation seen so far, sorted by name. */
+    public List<Operation> snapshot() {
+        List<Operation> ops = new ArrayList<>(operations.values());
+        ops.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return ops;
+    }
+
+    public void resetAll() {
+        operations.values().forEach(Operation::reset);
+    }
+
+    @Override
+    public void close() {
+        synchronized (registered) {
+            for (ObjectName name : registered) {
+                try {
+                    mbeanServer.unregisterMBean(name);
+                } catch (JMException e) {
+                    // Already gone; nothing to clean up.
+                }
+            }
+            registered.clear();
+        }
+    }
+}
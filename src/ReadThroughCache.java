@@ -0,0 +1,130 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded, TTL-expiring read-through cache.
+ *
+ * get() returns the cached value if it is present and younger than the TTL, and
+ * otherwise calls the loader and caches what it returns (empty results are not
+ * cached, so a row inserted later is found on the next lookup). When the cache is
+ * full the least recently used entry is evicted.
+ *
+ * Loads run outside the lock. An invalidation that happens while a load is in
+ * flight wins: the loaded value is returned to its caller but not cached, so a
+ * write can never be hidden by a read that started before it.
+ */
+public class ReadThroughCache<K, V> {
+
+    /** Loads the value for a key on a miss; may return null for "not found". */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key);
+    }
+
+    private record Entry<V>(V value, long loadedAtNanos) {
+    }
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+
+    public ReadThroughCache(String name, int maxEntries, long ttlMillis) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() <= ReadThroughCache.this.maxEntries) {
+                    return false;
+                }
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    public Optional<V> get(K key, Loader<K, V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAtNanos() < ttlNanos) {
+                    hits.incrementAndGet();
+                    return Optional.of(entry.value());
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+            loadGeneration = generation;
+        }
+
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        V value = loader.load(key);
+        long loadNanos = System.nanoTime() - start;
+        totalLoadNanos.addAndGet(loadNanos);
+        maxLoadNanos.accumulateAndGet(loadNanos, Math::max);
+
+        if (value != null) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(key, new Entry<>(value, System.nanoTime()));
+                }
+            }
+        }
+        return Optional.ofNullable(value);
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(name, entries.size(), maxEntries, hits.get(), misses.get(), evictions.get(),
+                expirations.get(), invalidations.get(), totalLoadNanos.get(), maxLoadNanos.get());
+    }
+
+    /** Hit ratio, eviction and load-latency counters for one cache. */
+    public record Stats(String name, int size, int maxEntries, long hits, long misses, long evictions,
+                        long expirations, long invalidations, long totalLoadNanos, long maxLoadNanos) {
+
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        public double averageLoadMillis() {
+            return misses == 0 ? 0 : totalLoadNanos / 1_000_000.0 / misses;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Cache %s: %d/%d entries | %d hits, %d misses (%.1f%% hit ratio) | " +
+                                 "evicted: %d | expired: %d | invalidated: %d | load avg %.3f ms, max %.3f ms",
+                    name, size, maxEntries, hits, misses, hitRatio() * 100,
+                    evictions, expirations, invalidations, averageLoadMillis(), maxLoadNanos / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Sales reports computed in memory from a columnar snapshot of playstoretransaction.
+ *
+ * refresh() copies each transaction's GameID, purchase day (as an epoch day) and
+ * amount into primitive arrays, and the games, sellers and categories they map to
+ * into small lookup tables. Reports then run over those arrays on the common
+ * fork-join pool (each worker sums its slice of rows into its own totals, which are
+ * merged at the end), so they scale with cores and never hold a database connection
+ * or a read transaction while they compute.
+ *
+ * Refreshes are incremental: only rows with a TransactionID above the last one
+ * loaded are read. spending_totals tells whether older rows changed: its Deletions
+ * counter, bumped by the delete trigger, moves whenever a transaction is deleted (e.g.
+ * with its user), and its row count disagrees with the snapshot's when rows at or
+ * below the mark appeared (a file imported with explicit IDs). Either way the snapshot
+ * is reloaded from scratch. In-place edits of existing transactions are not detected;
+ * refresh(conn, true) forces a full reload.
+ *
+ * Reports read whichever snapshot was current when they started, so they can run
+ * concurrently with a refresh.
+ */
+public class SalesAnalytics {
+
+    /** Revenue and purchase count for one game, seller, category or month. */
+    public record Revenue(String name, long transactions, double revenue) {
+    }
+
+    /** Revenue on one day and over the window of days ending on it. */
+    public record DailyRevenue(LocalDate date, double revenue, double windowRevenue) {
+    }
+
+    /** What a refresh did: whether it reloaded everything, and how many rows were read and are held. */
+    public record Refresh(boolean fullReload, int rowsLoaded, int rowsHeld) {
+    }
+
+    /**
+     * Games, sellers and categories as dense indexes: gameIndex maps a GameID to its
+     * position in the per-game arrays (-1 for unknown IDs).
+     */
+    private record Catalog(int[] gameIndex, String[] gameNames, int[] gameSeller, int[] gameCategory,
+                           String[] sellerNames, String[] categoryNames) {
+
+        int gameOf(int gameID) {
+            return gameID > 0 && gameID < gameIndex.length ? gameIndex[gameID] : -1;
+        }
+    }
+
+    /**
+     * One consistent view of the loaded rows. The arrays may be longer than size; a
+     * refresh appends past size in place, which readers of this snapshot never look at.
+     */
+    private record Snapshot(int size, int[] gameID, int[] day, double[] amount, long amountCount,
+                            long deletions, long highWaterMark, int minDay, int maxDay, Catalog catalog) {
+    }
+
+    private record Totals(long[] counts, double[] sums) {
+
+        Totals(int groups) {
+            this(new long[groups], new double[groups]);
+        }
+
+        Totals merge(Totals other) {
+            for (int g = 0; g < counts.length; g++) {
+                counts[g] += other.counts[g];
+                sums[g] += other.sums[g];
+            }
+            return this;
+        }
+    }
+
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // Rows per parallel task: below this the fork-join overhead outweighs the work.
+    private static final int MIN_CHUNK = 1 << 16;
+    private static final String NO_SELLER = "(no seller)";
+    private static final String NO_CATEGORY = "(uncategorized)";
+
+    private final int fetchSize;
+    private final String transactions;
+    private final String totals;
+    private volatile Snapshot snapshot;
+
+    public SalesAnalytics(int fetchSize) {
+        this(fetchSize, "playstoretransaction", "spending_totals");
+    }
+
+    /**
+     * Reads transactions and their count from the given tables or views instead, e.g. the
+     * views over every transaction partition (see TransactionPartitions).
+     */
+    public SalesAnalytics(int fetchSize, String transactions, String totals) {
+        this.fetchSize = fetchSize;
+        this.transactions = transactions;
+        this.totals = totals;
+        this.snapshot = new Snapshot(0, new int[0], new int[0], new double[0], 0, 0, 0, NO_DAY, NO_DAY,
+                new Catalog(new int[0], new String[0], new int[0], new int[0], new String[0], new String[0]));
+    }
+
+    public Refresh refresh(Connection conn) throws SQLException {
+        return refresh(conn, false);
+    }
+
+    /**
+     * Loads transactions added since the last refresh (or all of them if {@code full} or
+     * if older rows changed) and re-reads the catalog, all in one read transaction.
+     */
+    public synchronized Refresh refresh(Connection conn, boolean full) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            Catalog catalog = loadCatalog(conn);
+            long[] totals = readTotals(conn);
+            Snapshot current = full ? empty(catalog) : snapshot;
+            Snapshot next = append(conn, current, catalog, totals[1]);
+            // The trigger-maintained spending_totals tell us in O(1) whether rows at or below the
+            // old high-water mark came or went; if so, start over.
+            if (current.size() > 0 && (current.deletions() != totals[1] || next.amountCount() != totals[0])) {
+                current = empty(catalog);
+                next = append(conn, current, catalog, totals[1]);
+            }
+            conn.commit();
+            snapshot = next;
+            return new Refresh(current.size() == 0, next.size() - current.size(), next.size());
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static Snapshot empty(Catalog catalog) {
+        return new Snapshot(0, new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], new double[INITIAL_CAPACITY],
+                0, 0, 0, NO_DAY, NO_DAY, catalog);
+    }
+
+    /**
+     * Transactions with a non-null TotalAmount and transactions ever deleted, from the summary
+     * schema migrations 4 and 6 maintain.
+     */
+    private long[] readTotals(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT AmountCount, Deletions FROM " + totals + " WHERE ID = 1;")) {
+            return rs.next() ? new long[] { rs.getLong(1), rs.getLong(2) } : new long[2];
+        }
+    }
+
+    private static Catalog loadCatalog(Connection conn) throws SQLException {
+        Map<Integer, Integer> sellerIndex = new HashMap<>();
+        List<String> sellerNames = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT SellerID, SellerName FROM sellerinfo ORDER BY SellerID;")) {
+            while (rs.next()) {
+                sellerIndex.put(rs.getInt(1), sellerNames.size());
+                sellerNames.add(rs.getString(2));
+            }
+        }
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        List<String> categoryNames = new ArrayList<>();
+        int maxGameID;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(GameID), 0) FROM gamesinfo;")) {
+            maxGameID = rs.next() ? rs.getInt(1) : 0;
+        }
+        int[] gameIndex = new int[maxGameID + 1];
+        Arrays.fill(gameIndex, -1);
+        List<String> gameNames = new ArrayList<>();
+        IntList gameSeller = new IntList();
+        IntList gameCategory = new IntList();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT GameID, GameName, SellerID, Category FROM gamesinfo ORDER BY GameID;")) {
+            while (rs.next()) {
+                gameIndex[rs.getInt(1)] = gameNames.size();
+                gameNames.add(rs.getString(2));
+                int sellerID = rs.getInt(3);
+                Integer seller = rs.wasNull() ? null : sellerIndex.get(sellerID);
+                if (seller == null) {
+                    seller = sellerIndex.computeIfAbsent(-1, k -> {
+                        sellerNames.add(NO_SELLER);
+                        return sellerNames.size() - 1;
+                    });
+                }
+                gameSeller.add(seller);
+                String category = rs.getString(4);
+                gameCategory.add(categoryIndex.computeIfAbsent(category == null ? NO_CATEGORY : category, c -> {
+                    categoryNames.add(c);
+                    return categoryNames.size() - 1;
+                }));
+            }
+        }
+        return new Catalog(gameIndex, gameNames.toArray(String[]::new), gameSeller.toArray(), gameCategory.toArray(),
+                sellerNames.toArray(String[]::new), categoryNames.toArray(String[]::new));
+    }
+
+    private Snapshot append(Connection conn, Snapshot current, Catalog catalog, long deletions) throws SQLException {
+        int size = current.size();
+        int[] gameID = current.gameID();
+        int[] day = current.day();
+        double[] amount = current.amount();
+        long amountCount = current.amountCount();
+        long highWaterMark = current.highWaterMark();
+        int minDay = current.minDay();
+        int maxDay = current.maxDay();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT TransactionID, GameID, PurchaseDate, TotalAmount FROM " + transactions + " " +
+                "WHERE TransactionID > ? ORDER BY TransactionID;")) {
+            pstmt.setFetchSize(fetchSize);
+            pstmt.setLong(1, highWaterMark);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (size == gameID.length) {
+                        int capacity = Math.max(INITIAL_CAPACITY, gameID.length + (gameID.length >> 1));
+                        gameID = Arrays.copyOf(gameID, capacity);
+                        day = Arrays.copyOf(day, capacity);
+                        amount = Arrays.copyOf(amount, capacity);
+                    }
+                    highWaterMark = rs.getLong(1);
+                    gameID[size] = rs.getInt(2);
+                    int d = epochDay(rs.getString(3));
+                    day[size] = d;
+                    if (d != NO_DAY) {
+                        minDay = minDay == NO_DAY ? d : Math.min(minDay, d);
+                        maxDay = maxDay == NO_DAY ? d : Math.max(maxDay, d);
+                    }
+                    amount[size] = rs.getDouble(4);
+                    if (!rs.wasNull()) {
+                        amountCount++;
+                    }
+                    size++;
+                }
+            }
+        }
+        return new Snapshot(size, gameID, day, amount, amountCount, deletions, highWaterMark, minDay, maxDay,
+                catalog);
+    }
+
+    /** Days since 1970-01-01 for a 'YYYY-MM-DD...' date, or NO_DAY if it is missing or malformed. */
+    private static int epochDay(String date) {
+        if (date == null || date.length() < 10) {
+            return NO_DAY;
+        }
+        try {
+            return (int) LocalDate.parse(date.substring(0, 10)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return NO_DAY;
+        }
+    }
+
+    /** Number of transactions in the current snapshot. */
+    public int size() {
+        return snapshot.size();
+    }
+
+    public List<Revenue> revenueByGame() {
+        Snapshot s = snapshot;
+        Catalog c = s.catalog();
+        Totals totals = aggregate(s, c.gameNames().length, i -> c.gameOf(s.gameID()[i]));
+        return byRevenue(totals, c.gameNames());
+    }
+
+    public List<Revenue> revenueBySeller() {
+        Snapshot s = snapshot;
+        Catalog c = s.catalog();
+        Totals totals = aggregate(s, c.sellerNames().length, i -> {
+            int game = c.gameOf(s.gameID()[i]);
+            return game < 0 ? -1 : c.gameSeller()[game];
+        });
+        return byRevenue(totals, c.sellerNames());
+    }
+
+    public List<Revenue> revenueByCategory() {
+        Snapshot s = snapshot;
+        Catalog c = s.catalog();
+        Totals totals = aggregate(s, c.categoryNames().length, i -> {
+            int game = c.gameOf(s.gameID()[i]);
+            return game < 0 ? -1 : c.gameCategory()[game];
+        });
+        return byRevenue(totals, c.categoryNames());
+    }
+
+    /** Revenue per calendar month, oldest first. Transactions without a valid date are left out. */
+    public List<Revenue> revenueByMonth() {
+        Snapshot s = snapshot;
+        if (s.minDay() == NO_DAY) {
+            return List.of();
+        }
+        YearMonth first = YearMonth.from(LocalDate.ofEpochDay(s.minDay()));
+        // Month of each day in range, counted from the first, so the per-row work is one array lookup.
+        int[] monthOfDay = new int[s.maxDay() - s.minDay() + 1];
+        for (int d = 0; d < monthOfDay.length; d++) {
+            LocalDate date = LocalDate.ofEpochDay(s.minDay() + d);
+            monthOfDay[d] = (date.getYear() - first.getYear()) * 12 + date.getMonthValue() - first.getMonthValue();
+        }
+        int months = monthOfDay[monthOfDay.length - 1] + 1;
+        Totals totals = aggregate(s, months, i -> s.day()[i] == NO_DAY ? -1 : monthOfDay[s.day()[i] - s.minDay()]);
+        List<Revenue> result = new ArrayList<>(months);
+        for (int m = 0; m < months; m++) {
+            result.add(new Revenue(first.plusMonths(m).toString(), totals.counts()[m], totals.sums()[m]));
+        }
+        return result;
+    }
+
+    /** The {@code n} games with the highest revenue, highest first. */
+    public List<Revenue> topGames(int n) {
+        List<Revenue> games = revenueByGame();
+        return games.subList(0, Math.max(0, Math.min(n, games.size())));
+    }
+
+    /** The {@code n} sellers with the highest revenue, highest first. */
+    public List<Revenue> topSellers(int n) {
+        List<Revenue> sellers = revenueBySeller();
+        return sellers.subList(0, Math.max(0, Math.min(n, sellers.size())));
+    }
+
+    /**
+     * Revenue for every day from the first purchase to the last, each with the total over
+     * the {@code windowDays} days ending on it (a trailing moving sum).
+     */
+    public List<DailyRevenue> rollingRevenue(int windowDays) {
+        if (windowDays < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 day");
+        }
+        Snapshot s = snapshot;
+        if (s.minDay() == NO_DAY) {
+            return List.of();
+        }
+        int days = s.maxDay() - s.minDay() + 1;
+        double[] daily = aggregate(s, days, i -> s.day()[i] == NO_DAY ? -1 : s.day()[i] - s.minDay()).sums();
+        double[] cumulative = daily.clone();
+        Arrays.parallelPrefix(cumulative, Double::sum);
+        List<DailyRevenue> result = new ArrayList<>(days);
+        for (int d = 0; d < days; d++) {
+            double window = cumulative[d] - (d >= windowDays ? cumulative[d - windowDays] : 0);
+            result.add(new DailyRevenue(LocalDate.ofEpochDay(s.minDay() + d), daily[d], window));
+        }
+        return result;
+    }
+
+    /**
+     * Counts and sums amounts per group over every row, in parallel slices. groupOf maps
+     * a row index to its group, or to -1 to leave the row out.
+     */
+    private static Totals aggregate(Snapshot s, int groups, IntUnaryOperator groupOf) {
+        int size = s.size();
+        int tasks = Math.max(1, Math.min(size / MIN_CHUNK, ForkJoinPool.getCommonPoolParallelism() * 4));
+        double[] amount = s.amount();
+        return IntStream.range(0, tasks).parallel()
+                .mapToObj(task -> {
+                    Totals partial = new Totals(groups);
+                    int to = (int) ((long) size * (task + 1) / tasks);
+                    for (int i = (int) ((long) size * task / tasks); i < to; i++) {
+                        int g = groupOf.applyAsInt(i);
+                        if (g >= 0) {
+                            partial.counts()[g]++;
+                            partial.sums()[g] += amount[i];
+                        }
+                    }
+                    return partial;
+                })
+                .reduce(Totals::merge)
+                .orElseGet(() -> new Totals(groups));
+    }
+
+    /** Groups with at least one transaction, highest revenue first. */
+    private static List<Revenue> byRevenue(Totals totals, String[] names) {
+        List<Revenue> result = new ArrayList<>();
+        for (int g = 0; g < names.length; g++) {
+            if (totals.counts()[g] > 0) {
+                result.add(new Revenue(names[g], totals.counts()[g], totals.sums()[g]));
+            }
+        }
+        result.sort(Comparator.comparingDouble(Revenue::revenue).reversed());
+        return result;
+    }
+
+    /** Growable int array, so the catalog load does not box every index. */
+    private static final class IntList {
+        private int[] values = new int[256];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
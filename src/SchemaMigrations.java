@@ -0,0 +1,282 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema changes, applied in order and recorded in schema_migrations.
+ *
+ * Each migration runs in its own transaction together with the row that records it,
+ * so a database is always at exactly one version. The version is also cached in
+ * PRAGMA user_version, which lives in the file header: checking it costs no table
+ * reads and no writes, so an up-to-date database is recognised with a single probe.
+ *
+ * Migration 1 is the original schema written with IF NOT EXISTS, which lets databases
+ * created before migrations existed be adopted in place. New schema changes go at the
+ * end of MIGRATIONS; never edit one that has shipped.
+ */
+public final class SchemaMigrations {
+
+    private record Migration(int version, String description, String... statements) {
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Base marketplace schema",
+                    "CREATE TABLE IF NOT EXISTS users (" +
+                    "UserID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "UserType VARCHAR(20) NOT NULL, " +
+                    "Username VARCHAR(50) NOT NULL UNIQUE, " +
+                    "Email VARCHAR(100) UNIQUE, " +
+                    "Password VARCHAR(100) NOT NULL);",
+
+                    "CREATE TABLE IF NOT EXISTS sellerinfo (" +
+                    "SellerID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "SellerName VARCHAR(100), " +
+                    "ContactInfo VARCHAR(100), " +
+                    "GamesSold INTEGER UNSIGNED DEFAULT 0);",
+
+                    "CREATE TABLE IF NOT EXISTS gamesinfo (" +
+                    "GameID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "GameName VARCHAR(100) NOT NULL, " +
+                    "SellerID INTEGER, " +
+                    "Category VARCHAR(50), " +
+                    "Price DECIMAL(10,2), " +
+                    "Developer VARCHAR(100), " +
+                    "YearPublished INTEGER, " +
+                    "FOREIGN KEY (SellerID) REFERENCES sellerinfo(SellerID));",
+
+                    "CREATE TABLE IF NOT EXISTS playstoretransaction (" +
+                    "TransactionID INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "UserID INTEGER, " +
+                    "GameID INTEGER, " +
+                    "PurchaseDate TEXT, " +
+                    "TotalAmount REAL, " +
+                    "FOREIGN KEY (UserID) REFERENCES users(UserID) ON DELETE CASCADE, " +
+                    "FOREIGN KEY (GameID) REFERENCES gamesinfo(GameID) ON DELETE CASCADE);"),
+
+            new Migration(2, "Indexes for category, seller and per-user/per-game transaction lookups",
+                    // getGamesByCategory: equality on Category, ordered by Price, all selected columns in the index.
+                    "CREATE INDEX IF NOT EXISTS idx_gamesinfo_category " +
+                    "ON gamesinfo (Category, Price DESC, GameName, Developer, YearPublished);",
+                    // getSellersWithGames join and seller lookups.
+                    "CREATE INDEX IF NOT EXISTS idx_gamesinfo_seller ON gamesinfo (SellerID);",
+                    // getTotalSpendingPerUser / above-average: SUM(TotalAmount) per user without touching the table,
+                    // and the ON DELETE CASCADE probe from deleteUser.
+                    "CREATE INDEX IF NOT EXISTS idx_transaction_user ON playstoretransaction (UserID, TotalAmount);",
+                    // ON DELETE CASCADE probe when a game is deleted.
+                    "CREATE INDEX IF NOT EXISTS idx_transaction_game ON playstoretransaction (GameID);"),
+
+            new Migration(3, "Index for keyset pagination of transactions by user",
+                    // Entries are ordered by (UserID, TransactionID) via the implicit rowid suffix.
+                    "CREATE INDEX IF NOT EXISTS idx_transaction_user_txn ON playstoretransaction (UserID, TransactionID);"),
+
+            new Migration(4, "Materialized per-user and global spending summaries maintained by triggers",
+                    // One row per user with at least one transaction.
+                    "CREATE TABLE IF NOT EXISTS user_spending (" +
+                    "UserID INTEGER PRIMARY KEY, " +
+                    "TransactionCount INTEGER NOT NULL, " +
+                    "TotalSpent REAL NOT NULL);",
+                    // Single row holding what AVG(TotalAmount) over all transactions is computed from.
+                    "CREATE TABLE IF NOT EXISTS spending_totals (" +
+                    "ID INTEGER PRIMARY KEY CHECK (ID = 1), " +
+                    "AmountCount INTEGER NOT NULL, " +
+                    "TotalSpent REAL NOT NULL);",
+
+                    "DELETE FROM user_spending;",
+                    "INSERT INTO user_spending (UserID, TransactionCount, TotalSpent) " +
+                    "SELECT UserID, COUNT(*), COALESCE(SUM(TotalAmount), 0) FROM playstoretransaction " +
+                    "WHERE UserID IS NOT NULL GROUP BY UserID;",
+                    "INSERT OR REPLACE INTO spending_totals (ID, AmountCount, TotalSpent) " +
+                    "SELECT 1, COUNT(TotalAmount), COALESCE(SUM(TotalAmount), 0) FROM playstoretransaction;",
+
+                    "CREATE TRIGGER IF NOT EXISTS trg_spending_after_insert AFTER INSERT ON playstoretransaction " +
+                    "BEGIN " +
+                    "INSERT INTO user_spending (UserID, TransactionCount, TotalSpent) " +
+                    "SELECT NEW.UserID, 1, COALESCE(NEW.TotalAmount, 0) WHERE NEW.UserID IS NOT NULL " +
+                    "ON CONFLICT (UserID) DO UPDATE SET TransactionCount = TransactionCount + 1, " +
+                    "TotalSpent = TotalSpent + excluded.TotalSpent; " +
+                    "UPDATE spending_totals SET AmountCount = AmountCount + (NEW.TotalAmount IS NOT NULL), " +
+                    "TotalSpent = TotalSpent + COALESCE(NEW.TotalAmount, 0) WHERE ID = 1; " +
+                    "END;",
+
+                    // Also fires for rows removed by ON DELETE CASCADE from users and gamesinfo.
+                    "CREATE TRIGGER IF NOT EXISTS trg_spending_after_delete AFTER DELETE ON playstoretransaction " +
+                    "BEGIN " +
+                    "UPDATE user_spending SET TransactionCount = TransactionCount - 1, " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE UserID = OLD.UserID; " +
+                    "DELETE FROM user_spending WHERE UserID = OLD.UserID AND TransactionCount <= 0; " +
+                    "UPDATE spending_totals SET AmountCount = AmountCount - (OLD.TotalAmount IS NOT NULL), " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE ID = 1; " +
+                    "END;",
+
+                    "CREATE TRIGGER IF NOT EXISTS trg_spending_after_update AFTER UPDATE OF UserID, TotalAmount " +
+                    "ON playstoretransaction " +
+                    "BEGIN " +
+                    "UPDATE user_spending SET TransactionCount = TransactionCount - 1, " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE UserID = OLD.UserID; " +
+                    "DELETE FROM user_spending WHERE UserID = OLD.UserID AND TransactionCount <= 0; " +
+                    "INSERT INTO user_spending (UserID, TransactionCount, TotalSpent) " +
+                    "SELECT NEW.UserID, 1, COALESCE(NEW.TotalAmount, 0) WHERE NEW.UserID IS NOT NULL " +
+                    "ON CONFLICT (UserID) DO UPDATE SET TransactionCount = TransactionCount + 1, " +
+                    "TotalSpent = TotalSpent + excluded.TotalSpent; " +
+                    "UPDATE spending_totals SET " +
+                    "AmountCount = AmountCount - (OLD.TotalAmount IS NOT NULL) + (NEW.TotalAmount IS NOT NULL), " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) + COALESCE(NEW.TotalAmount, 0) WHERE ID = 1; " +
+                    "END;"),
+
+            new Migration(5, "Full-text search index over game names, developers and categories",
+                    // External-content table: the index stores only tokens and reads column values from gamesinfo.
+                    // Prefix indexes make search-as-you-type ("cyb*") a lookup instead of a term scan.
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS games_fts USING fts5(" +
+                    "GameName, Developer, Category, " +
+                    "content='gamesinfo', content_rowid='GameID', " +
+                    "tokenize='unicode61 remove_diacritics 2', prefix='2 3');",
+
+                    "CREATE TRIGGER IF NOT EXISTS trg_games_fts_after_insert AFTER INSERT ON gamesinfo " +
+                    "BEGIN " +
+                    "INSERT INTO games_fts (rowid, GameName, Developer, Category) " +
+                    "VALUES (NEW.GameID, NEW.GameName, NEW.Developer, NEW.Category); " +
+                    "END;",
+
+                    // An external-content index can only remove a row given the values it was indexed with.
+                    "CREATE TRIGGER IF NOT EXISTS trg_games_fts_after_delete AFTER DELETE ON gamesinfo " +
+                    "BEGIN " +
+                    "INSERT INTO games_fts (games_fts, rowid, GameName, Developer, Category) " +
+                    "VALUES ('delete', OLD.GameID, OLD.GameName, OLD.Developer, OLD.Category); " +
+                    "END;",
+
+                    "CREATE TRIGGER IF NOT EXISTS trg_games_fts_after_update " +
+                    "AFTER UPDATE OF GameID, GameName, Developer, Category ON gamesinfo " +
+                    "BEGIN " +
+                    "INSERT INTO games_fts (games_fts, rowid, GameName, Developer, Category) " +
+                    "VALUES ('delete', OLD.GameID, OLD.GameName, OLD.Developer, OLD.Category); " +
+                    "INSERT INTO games_fts (rowid, GameName, Developer, Category) " +
+                    "VALUES (NEW.GameID, NEW.GameName, NEW.Developer, NEW.Category); " +
+                    "END;",
+
+                    // Index the games already in the database.
+                    "INSERT INTO games_fts (games_fts) VALUES ('rebuild');"),
+
+            new Migration(6, "Deletion counter in spending_totals for detecting removed transactions",
+                    // Counts every transaction ever deleted, so readers holding a copy of older rows
+                    // (SalesAnalytics) can tell in O(1) that some of them are gone.
+                    "ALTER TABLE spending_totals ADD COLUMN Deletions INTEGER NOT NULL DEFAULT 0;",
+                    "DROP TRIGGER IF EXISTS trg_spending_after_delete;",
+                    "CREATE TRIGGER trg_spending_after_delete AFTER DELETE ON playstoretransaction " +
+                    "BEGIN " +
+                    "UPDATE user_spending SET TransactionCount = TransactionCount - 1, " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE UserID = OLD.UserID; " +
+                    "DELETE FROM user_spending WHERE UserID = OLD.UserID AND TransactionCount <= 0; " +
+                    "UPDATE spending_totals SET AmountCount = AmountCount - (OLD.TotalAmount IS NOT NULL), " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0), Deletions = Deletions + 1 WHERE ID = 1; " +
+                    "END;"),
+
+            new Migration(7, "GamesSold maintained by triggers on playstoretransaction",
+                    // Only purchaseGame used to count sales, so start from the transactions on record.
+                    "UPDATE sellerinfo SET GamesSold = (" +
+                    "SELECT COUNT(*) FROM gamesinfo g JOIN playstoretransaction t ON t.GameID = g.GameID " +
+                    "WHERE g.SellerID = sellerinfo.SellerID);",
+
+                    "CREATE TRIGGER IF NOT EXISTS trg_games_sold_after_insert AFTER INSERT ON playstoretransaction " +
+                    "BEGIN " +
+                    "UPDATE sellerinfo SET GamesSold = COALESCE(GamesSold, 0) + 1 " +
+                    "WHERE SellerID = (SELECT SellerID FROM gamesinfo WHERE GameID = NEW.GameID); " +
+                    "END;",
+
+                    // Also fires for rows removed by ON DELETE CASCADE from users. When a game is deleted
+                    // its row is gone before the cascade, so its seller keeps those sales.
+                    "CREATE TRIGGER IF NOT EXISTS trg_games_sold_after_delete AFTER DELETE ON playstoretransaction " +
+                    "BEGIN " +
+                    "UPDATE sellerinfo SET GamesSold = GamesSold - 1 " +
+                    "WHERE SellerID = (SELECT SellerID FROM gamesinfo WHERE GameID = OLD.GameID); " +
+                    "END;",
+
+                    "CREATE TRIGGER IF NOT EXISTS trg_games_sold_after_update AFTER UPDATE OF GameID " +
+                    "ON playstoretransaction WHEN OLD.GameID IS NOT NEW.GameID " +
+                    "BEGIN " +
+                    "UPDATE sellerinfo SET GamesSold = GamesSold - 1 " +
+                    "WHERE SellerID = (SELECT SellerID FROM gamesinfo WHERE GameID = OLD.GameID); " +
+                    "UPDATE sellerinfo SET GamesSold = COALESCE(GamesSold, 0) + 1 " +
+                    "WHERE SellerID = (SELECT SellerID FROM gamesinfo WHERE GameID = NEW.GameID); " +
+                    "END;"),
+
+            new Migration(8, "SellerID in the category index, so getGamesByCategory is covered",
+                    // Migration 2's index left out SellerID, so every matching row still read the table.
+                    "DROP INDEX IF EXISTS idx_gamesinfo_category;",
+                    "CREATE INDEX idx_gamesinfo_category " +
+                    "ON gamesinfo (Category, Price DESC, GameName, SellerID, Developer, YearPublished);")
+    );
+
+    private SchemaMigrations() {
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /** Returns the version recorded in the database, or 0 if it has never been migrated. */
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                         "Version INTEGER PRIMARY KEY, " +
+                         "Description TEXT NOT NULL, " +
+                         "AppliedAt TEXT NOT NULL DEFAULT (datetime('now')));");
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(Version), 0) FROM schema_migrations;")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /** The version cached in the database header by migrate(), or 0 if it was never set. */
+    public static int cachedVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** Applies every migration newer than the database's version. Returns the number applied. */
+    public static int migrate(Connection conn) throws SQLException {
+        int current = currentVersion(conn);
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) {
+                continue;
+            }
+            apply(conn, migration);
+            System.out.println("✅ Applied schema migration " + migration.version() + ": " + migration.description());
+            applied++;
+        }
+        // Databases migrated before the version was cached in the header.
+        if (cachedVersion(conn) != latestVersion()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA user_version = " + latestVersion() + ";");
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement record = conn.prepareStatement(
+                     "INSERT INTO schema_migrations (Version, Description) VALUES (?, ?);")) {
+            for (String sql : migration.statements()) {
+                stmt.execute(sql);
+            }
+            record.setInt(1, migration.version());
+            record.setString(2, migration.description());
+            record.executeUpdate();
+            stmt.execute("PRAGMA user_version = " + migration.version() + ";");
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + migration.version() + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** A game with the name of its seller; sellerName is null when the seller no longer exists (RIGHT JOIN). */
+public record SellerGame(String sellerName, String gameName) {
+
+    static SellerGame from(ResultSet rs) throws SQLException {
+        return new SellerGame(rs.getString("SellerName"), rs.getString("GameName"));
+    }
+}
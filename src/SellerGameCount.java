@@ -0,0 +1,10 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** A seller and how many games they list. */
+public record SellerGameCount(int sellerID, String sellerName, int gameCount) {
+
+    static SellerGameCount from(ResultSet rs) throws SQLException {
+        return new SellerGameCount(rs.getInt("SellerID"), rs.getString("SellerName"), rs.getInt("GameCount"));
+    }
+}
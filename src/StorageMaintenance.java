@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+/**
+ * Online backups, compaction and a storage report for a live database.
+ *
+ * backup() copies the database with SQLite's online backup API, pagesPerStep pages
+ * per step. In WAL mode the source connection first opens a read transaction and
+ * holds it for the whole copy. Without it, every commit from another connection
+ * would restart the copy from page 1, and under steady writes it would never finish.
+ * WAL readers do not block the writer, so writes carry on during the backup. The
+ * backup is the database as of its first step. In rollback-journal mode no snapshot
+ * is held: the shared lock is released after every step so a waiting writer can
+ * commit in between. A write then restarts the copy.
+ *
+ * snapshot() writes the same consistent copy with VACUUM INTO, in one read
+ * transaction. It is slower per page, but the copy comes out compacted, with no free pages.
+ *
+ * Deletes leave free pages behind, and the file never shrinks on its own. With
+ * auto_vacuum=INCREMENTAL, incrementalVacuum() hands up to N free pages back to the
+ * file system per call, which is cheap enough to run on a schedule. Switching an
+ * existing database to that mode needs one full VACUUM: see enableIncrementalAutoVacuum().
+ */
+public final class StorageMaintenance {
+
+    /** Called after each backup step with the step's start time (System.nanoTime()) and progress. */
+    @FunctionalInterface
+    public interface StepListener {
+        void stepDone(long stepStartNanos, int pagesCopied, int remaining, int pageCount);
+    }
+
+    /** Outcome of one backup. {@code maxStepNanos} is the longest step, i.e. the longest single lock hold. */
+    public record Backup(Path file, long pages, int pageSize, int steps, int restarts,
+                         long elapsedNanos, long maxStepNanos) {
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : pages * (double) pageSize / (1024 * 1024) / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d pages (%.1f MB) to %s in %.2f s (%.1f MB/sec) | %d steps, longest %.1f ms%s",
+                    pages, pages * (double) pageSize / (1024 * 1024), file, elapsedNanos / 1e9,
+                    megabytesPerSecond(), steps, maxStepNanos / 1e6,
+                    restarts == 0 ? "" : " | restarted " + restarts + " times by concurrent writes");
+        }
+    }
+
+    /** Page and file sizes of the main database. */
+    public record Report(Path file, int pageSize, long pageCount, long freePages, String autoVacuum,
+                         long fileBytes, long walBytes) {
+
+        public double freePercent() {
+            return pageCount == 0 ? 0 : freePages * 100.0 / pageCount;
+        }
+
+        public long reclaimableBytes() {
+            return freePages * pageSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %,d pages of %,d bytes (%.1f MB file, %.1f MB WAL) | %,d free pages " +
+                                 "(%.1f%%, %.1f MB reclaimable) | auto_vacuum=%s",
+                    file, pageCount, pageSize, fileBytes / (1024.0 * 1024), walBytes / (1024.0 * 1024),
+                    freePages, freePercent(), reclaimableBytes() / (1024.0 * 1024), autoVacuum);
+        }
+    }
+
+    private static final String[] AUTO_VACUUM_MODES = { "NONE", "FULL", "INCREMENTAL" };
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    // In rollback-journal mode a step that finds the database locked sleeps and retries,
+    // up to 100 times, before the backup gives up.
+    private static final int BUSY_SLEEP_MS = 50;
+    private static final int BUSY_RETRIES = 100;
+
+    private StorageMaintenance() {
+    }
+
+    /**
+     * Backs the main database of {@code conn} up to {@code destination}. The copy is written
+     * to {@code <destination>.part} first and renamed when complete, so a failed or
+     * interrupted backup never leaves a truncated file under the real name.
+     */
+    public static Backup backup(Connection conn, Path destination, int pagesPerStep, StepListener listener)
+            throws SQLException, IOException {
+        return backup(conn, "main", destination, pagesPerStep, listener);
+    }
+
+    /** Backs up one schema of {@code conn} (main or an attached database), like backup() above. */
+    public static Backup backup(Connection conn, String schema, Path destination, int pagesPerStep,
+                                StepListener listener) throws SQLException, IOException {
+        if (pagesPerStep <= 0) {
+            throw new IllegalArgumentException("pagesPerStep must be positive");
+        }
+        Path partial = destination.resolveSibling(destination.getFileName() + ".part");
+        Files.deleteIfExists(partial);
+        boolean holdSnapshot = journalMode(conn, schema).equalsIgnoreCase("wal");
+        int pageSize = (int) pragma(conn, schema + ".page_size");
+        Progress progress = new Progress(listener);
+        try (Statement stmt = conn.createStatement()) {
+            if (holdSnapshot) {
+                stmt.execute("BEGIN;");
+            }
+            try {
+                if (holdSnapshot) {
+                    // A read transaction starts at its first read.
+                    pragma(conn, schema + ".schema_version");
+                }
+                DB db = conn.unwrap(SQLiteConnection.class).getDatabase();
+                progress.start = progress.stepStart = System.nanoTime();
+                int rc = db.backup(schema, partial.toString(), progress, BUSY_SLEEP_MS, BUSY_RETRIES, pagesPerStep);
+                if (rc != 0) {
+                    throw new SQLException("Backup stopped with SQLite result code " + rc);
+                }
+            } finally {
+                if (holdSnapshot) {
+                    stmt.execute("COMMIT;");
+                }
+            }
+            Files.move(partial, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        return new Backup(destination, progress.pageCount, pageSize, progress.steps, progress.restarts,
+                System.nanoTime() - progress.start, progress.maxStepNanos);
+    }
+
+    /** Tracks step times for backup(); the driver calls progress() after every step. */
+    private static final class Progress implements DB.ProgressObserver {
+        private final StepListener listener;
+        private long start;
+        private long stepStart;
+        private long maxStepNanos;
+        private int steps;
+        private int restarts;
+        private int pageCount;
+        private int lastRemaining = Integer.MAX_VALUE;
+
+        Progress(StepListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            long now = System.nanoTime();
+            boolean restarted = lastRemaining != Integer.MAX_VALUE && remaining > lastRemaining;
+            if (restarted) {
+                restarts++;
+            }
+            int copied = (lastRemaining == Integer.MAX_VALUE || restarted ? pageCount : lastRemaining) - remaining;
+            maxStepNanos = Math.max(maxStepNanos, now - stepStart);
+            steps++;
+            this.pageCount = pageCount;
+            lastRemaining = remaining;
+            if (listener != null) {
+                listener.stepDone(stepStart, copied, remaining, pageCount);
+            }
+            stepStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Writes a compacted copy of the database to {@code destination} with VACUUM INTO, in a
+     * single read transaction. The destination must not exist yet.
+     */
+    public static void snapshot(Connection conn, Path destination) throws SQLException {
+        snapshot(conn, "main", destination);
+    }
+
+    /** Writes a compacted copy of one schema of {@code conn} (main or an attached database). */
+    public static void snapshot(Connection conn, String schema, Path destination) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("VACUUM " + schema + " INTO ?;")) {
+            pstmt.setString(1, destination.toString());
+            pstmt.executeUpdate();
+        }
+    }
+
+    public static Report report(Connection conn) throws SQLException, IOException {
+        Path file = databaseFile(conn);
+        Path wal = file.resolveSibling(file.getFileName() + "-wal");
+        int mode = (int) pragma(conn, "auto_vacuum");
+        return new Report(file, (int) pragma(conn, "page_size"), pragma(conn, "page_count"),
+                pragma(conn, "freelist_count"),
+                mode >= 0 && mode < AUTO_VACUUM_MODES.length ? AUTO_VACUUM_MODES[mode] : String.valueOf(mode),
+                Files.size(file), Files.exists(wal) ? Files.size(wal) : 0);
+    }
+
+    /**
+     * Returns up to {@code maxPages} free pages to the file system, truncating the file.
+     * Returns the number of pages freed; always 0 unless auto_vacuum is INCREMENTAL.
+     */
+    public static long incrementalVacuum(Connection conn, int maxPages) throws SQLException {
+        return incrementalVacuum(conn, "main", maxPages);
+    }
+
+    /** Like incrementalVacuum() above, for one schema of {@code conn} (main or an attached database). */
+    public static long incrementalVacuum(Connection conn, String schema, int maxPages) throws SQLException {
+        if (pragma(conn, schema + ".auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            return 0;
+        }
+        long before = pragma(conn, schema + ".freelist_count");
+        if (before == 0) {
+            return 0;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            // executeUpdate steps the PRAGMA to completion; it frees one page per step.
+            stmt.executeUpdate("PRAGMA " + schema + ".incremental_vacuum(" + maxPages + ");");
+        }
+        return before - pragma(conn, schema + ".freelist_count");
+    }
+
+    /**
+     * Switches the database to auto_vacuum=INCREMENTAL. The mode of an existing database
+     * only changes with a full VACUUM, which rewrites the whole file and blocks writers while
+     * it runs. Returns false if the database was already in that mode.
+     */
+    public static boolean enableIncrementalAutoVacuum(Connection conn) throws SQLException {
+        if (pragma(conn, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL;");
+            stmt.execute("VACUUM;");
+        }
+        return true;
+    }
+
+    private static Path databaseFile(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list;")) {
+            while (rs.next()) {
+                if (rs.getString("name").equals("main")) {
+                    return Path.of(rs.getString("file"));
+                }
+            }
+        }
+        throw new SQLException("No main database on this connection");
+    }
+
+    private static String journalMode(Connection conn, String schema) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + schema + ".journal_mode;")) {
+            return rs.next() ? rs.getString(1) : "";
+        }
+    }
+
+    private static long pragma(Connection conn, String name) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + name + ";")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * One purchase row to be written to playstoretransaction.
+ */
+public record Transaction(int userID, int gameID, String purchaseDate, double totalAmount) {
+}
@@ -0,0 +1,991 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Monthly partitions of playstoretransaction, each in a database file of its own.
+ *
+ * A transaction whose PurchaseDate falls in a given month is written to
+ * {@code transactions-YYYY-MM.db} in the partition directory, which every pooled
+ * connection ATTACHes as schema {@code tx_YYYY_MM}. Each file holds one month of
+ * transactions, their (UserID, TransactionID) index and its own user_spending /
+ * spending_totals summaries, kept by the same triggers as schema migrations 4 and 6
+ * (PARTITION_UPGRADES brings files created before a change up to date). Inserts
+ * for the current month therefore land in small, shallow B-trees, and a cold month can
+ * be archived: copied with VACUUM INTO to {@code archive/}, then detached and deleted,
+ * without touching the other files. The directory is the catalog; there is no table
+ * listing the partitions.
+ *
+ * TransactionIDs stay unique across files: a partition row takes its ID from main's
+ * AUTOINCREMENT counter (sqlite_sequence), bumped in the same transaction. Rows with no
+ * usable date, rows for an archived month and rows for a month that finds no free slot
+ * (SQLite attaches at most 10 files to a connection) go to main's playstoretransaction,
+ * which also keeps everything written before partitioning was switched on.
+ *
+ * Reads cover main and every attached month. sync() defines TEMP views over them on each
+ * connection (all_transactions, all_user_spending, all_spending_totals), and
+ * UserTransactionMerge merges their (UserID, TransactionID) indexes in order.
+ *
+ * Sellers' GamesSold lives in main and counts the rows of every month: on writable
+ * connections sync() also defines TEMP triggers on each attached month's table that
+ * update main.sellerinfo. Archiving or restoring a month moves rows without firing them,
+ * so GamesSold keeps counting archived sales.
+ *
+ * Partition files have no foreign keys, since SQLite cannot enforce them across files.
+ * insert() checks that the user and game exist, and deleteUser() removes the user's rows
+ * from every attached month. Archived months are not touched. In WAL mode a transaction
+ * that writes several files is atomic in each file but not across them. main commits
+ * first, so a crash in between can lose the partition row or leave orphaned rows behind,
+ * but a TransactionID is never handed out twice.
+ */
+public final class TransactionPartitions {
+
+    /** One month's file, live (attached) or archived. */
+    public record Partition(String month, Path file, boolean archived, long transactions, long bytes) {
+
+        @Override
+        public String toString() {
+            return String.format("%s | %s | %,d transactions | %.1f MB | %s", month,
+                    archived ? "archived" : "live", transactions, bytes / (1024.0 * 1024), file);
+        }
+    }
+
+    /** Called once when a UserTransactionMerge closes, with the number of rows it produced. */
+    @FunctionalInterface
+    public interface MergeListener {
+        void closed(long rows, boolean success);
+    }
+
+    // SQLITE_MAX_ATTACHED in the bundled SQLite build.
+    private static final int MAX_ATTACHED = 10;
+    private static final Pattern FILE_NAME = Pattern.compile("transactions-(\\d{4}-\\d{2})\\.db");
+    private static final String SCHEMA_PREFIX = "tx_";
+    private static final int BUSY_TIMEOUT_MS = 30_000;
+
+    // The tables and triggers of one month, minus the foreign keys.
+    private static final String[] PARTITION_SCHEMA = {
+            "CREATE TABLE playstoretransaction (" +
+            "TransactionID INTEGER PRIMARY KEY, UserID INTEGER, GameID INTEGER, " +
+            "PurchaseDate TEXT, TotalAmount REAL);",
+            "CREATE INDEX idx_transaction_user ON playstoretransaction (UserID, TransactionID);",
+            "CREATE TABLE user_spending (UserID INTEGER PRIMARY KEY, " +
+            "TransactionCount INTEGER NOT NULL, TotalSpent REAL NOT NULL);",
+            "CREATE TABLE spending_totals (ID INTEGER PRIMARY KEY CHECK (ID = 1), " +
+            "AmountCount INTEGER NOT NULL, TotalSpent REAL NOT NULL);",
+            "INSERT INTO spending_totals (ID, AmountCount, TotalSpent) VALUES (1, 0, 0);",
+
+            "CREATE TRIGGER trg_spending_after_insert AFTER INSERT ON playstoretransaction " +
+            "BEGIN " +
+            "INSERT INTO user_spending (UserID, TransactionCount, TotalSpent) " +
+            "SELECT NEW.UserID, 1, COALESCE(NEW.TotalAmount, 0) WHERE NEW.UserID IS NOT NULL " +
+            "ON CONFLICT (UserID) DO UPDATE SET TransactionCount = TransactionCount + 1, " +
+            "TotalSpent = TotalSpent + excluded.TotalSpent; " +
+            "UPDATE spending_totals SET AmountCount = AmountCount + (NEW.TotalAmount IS NOT NULL), " +
+            "TotalSpent = TotalSpent + COALESCE(NEW.TotalAmount, 0) WHERE ID = 1; " +
+            "END;",
+            "CREATE TRIGGER trg_spending_after_delete AFTER DELETE ON playstoretransaction " +
+            "BEGIN " +
+            "UPDATE user_spending SET TransactionCount = TransactionCount - 1, " +
+            "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE UserID = OLD.UserID; " +
+            "DELETE FROM user_spending WHERE UserID = OLD.UserID AND TransactionCount <= 0; " +
+            "UPDATE spending_totals SET AmountCount = AmountCount - (OLD.TotalAmount IS NOT NULL), " +
+            "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE ID = 1; " +
+            "END;",
+            "CREATE TRIGGER trg_spending_after_update AFTER UPDATE OF UserID, TotalAmount " +
+            "ON playstoretransaction " +
+            "BEGIN " +
+            "UPDATE user_spending SET TransactionCount = TransactionCount - 1, " +
+            "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE UserID = OLD.UserID; " +
+            "DELETE FROM user_spending WHERE UserID = OLD.UserID AND TransactionCount <= 0; " +
+            "INSERT INTO user_spending (UserID, TransactionCount, TotalSpent) " +
+            "SELECT NEW.UserID, 1, COALESCE(NEW.TotalAmount, 0) WHERE NEW.UserID IS NOT NULL " +
+            "ON CONFLICT (UserID) DO UPDATE SET TransactionCount = TransactionCount + 1, " +
+            "TotalSpent = TotalSpent + excluded.TotalSpent; " +
+            "UPDATE spending_totals SET " +
+            "AmountCount = AmountCount - (OLD.TotalAmount IS NOT NULL) + (NEW.TotalAmount IS NOT NULL), " +
+            "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) + COALESCE(NEW.TotalAmount, 0) WHERE ID = 1; " +
+            "END;"
+    };
+
+    // Changes to PARTITION_SCHEMA since it shipped, in order. A file's PRAGMA user_version is the
+    // number it has had; new files get them all at creation. Never edit one that has shipped.
+    private static final List<String[]> PARTITION_UPGRADES = List.<String[]>of(
+            // Schema migration 6: deletion counter in spending_totals.
+            new String[] {
+                    "ALTER TABLE spending_totals ADD COLUMN Deletions INTEGER NOT NULL DEFAULT 0;",
+                    "DROP TRIGGER IF EXISTS trg_spending_after_delete;",
+                    "CREATE TRIGGER trg_spending_after_delete AFTER DELETE ON playstoretransaction " +
+                    "BEGIN " +
+                    "UPDATE user_spending SET TransactionCount = TransactionCount - 1, " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0) WHERE UserID = OLD.UserID; " +
+                    "DELETE FROM user_spending WHERE UserID = OLD.UserID AND TransactionCount <= 0; " +
+                    "UPDATE spending_totals SET AmountCount = AmountCount - (OLD.TotalAmount IS NOT NULL), " +
+                    "TotalSpent = TotalSpent - COALESCE(OLD.TotalAmount, 0), Deletions = Deletions + 1 WHERE ID = 1; " +
+                    "END;"
+            });
+
+    private static final String NEXT_TRANSACTION_ID_SQL =
+            "UPDATE main.sqlite_sequence SET seq = seq + 1 WHERE name = 'playstoretransaction' RETURNING seq;";
+    private static final String FIRST_TRANSACTION_ID_SQL =
+            "INSERT INTO main.sqlite_sequence (name, seq) " +
+            "SELECT 'playstoretransaction', COALESCE(MAX(TransactionID), 0) + 1 FROM main.playstoretransaction " +
+            "RETURNING seq;";
+    private static final String RESERVE_TRANSACTION_IDS_SQL =
+            "UPDATE main.sqlite_sequence SET seq = seq + ? WHERE name = 'playstoretransaction';";
+    private static final String REFERENCES_EXIST_SQL =
+            "SELECT EXISTS (SELECT 1 FROM main.users WHERE UserID = ?), " +
+            "EXISTS (SELECT 1 FROM main.gamesinfo WHERE GameID = ?);";
+
+    private final Path directory;
+    private final Path archiveDirectory;
+    // Copy-on-write under the monitor; read without it on the insert path.
+    private volatile Set<String> live;
+    private volatile Set<String> archived;
+    private volatile long version;
+    private boolean warnedFull;
+
+    private TransactionPartitions(Path directory, Set<String> live, Set<String> archived) {
+        this.directory = directory;
+        this.archiveDirectory = directory.resolve("archive");
+        this.live = Set.copyOf(live);
+        this.archived = Set.copyOf(archived);
+    }
+
+    /**
+     * Opens the partitions in {@code directory}, creating it if needed, and upgrades the
+     * live files' schema. A month found both live and archived (e.g. restored by hand)
+     * counts as live.
+     */
+    public static TransactionPartitions open(Path directory) throws IOException, SQLException {
+        Files.createDirectories(directory.resolve("archive"));
+        TreeSet<String> live = months(directory);
+        TreeSet<String> archived = months(directory.resolve("archive"));
+        archived.removeAll(live);
+        while (live.size() > MAX_ATTACHED) {
+            String oldest = live.pollFirst();
+            System.out.println("⚠️ More than " + MAX_ATTACHED + " live transaction partitions; " + oldest +
+                               " is not attached. Archive older months to bring it back.");
+        }
+        TransactionPartitions partitions = new TransactionPartitions(directory, live, archived);
+        for (String month : live) {
+            upgrade(partitions.liveFile(month));
+        }
+        return partitions;
+    }
+
+    /** Lists the partition files in {@code directory} by month. */
+    static TreeSet<String> months(Path directory) throws IOException {
+        TreeSet<String> months = new TreeSet<>();
+        if (!Files.isDirectory(directory)) {
+            return months;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "transactions-*.db")) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches() && monthOf(m.group(1)) != null) {
+                    months.add(m.group(1));
+                }
+            }
+        }
+        return months;
+    }
+
+    /** The month (YYYY-MM) of a purchase date, or null if the date does not start with one. */
+    public static String monthOf(String purchaseDate) {
+        if (purchaseDate == null || purchaseDate.length() < 7) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(purchaseDate.substring(0, 7)).toString();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String schemaOf(String month) {
+        return SCHEMA_PREFIX + month.replace('-', '_');
+    }
+
+    private static String monthOfSchema(String schema) {
+        return schema.substring(SCHEMA_PREFIX.length()).replace('_', '-');
+    }
+
+    /** The partition directory of a database file by default: {@code <name>-partitions} next to it. */
+    public static Path directoryFor(Path databaseFile) {
+        Path file = databaseFile.toAbsolutePath();
+        return file.resolveSibling(file.getFileName().toString().replaceFirst("\\.db$", "") + "-partitions");
+    }
+
+    private Path liveFile(String month) {
+        return directory.resolve("transactions-" + month + ".db");
+    }
+
+    private Path archiveFile(String month) {
+        return archiveDirectory.resolve("transactions-" + month + ".db");
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** The months with a live partition, oldest first. */
+    public List<String> liveMonths() {
+        return List.copyOf(new TreeSet<>(live));
+    }
+
+    /** Bumped whenever the set of live partitions changes; see ConnectionPool.setSessionSync. */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Makes sure the month has a live partition, creating its file if needed, so that a
+     * connection borrowed afterwards has it attached. Call before borrowing the connection
+     * that inserts. Returns false if rows for the month go to main instead: the month is
+     * unknown, archived, or there is no free slot.
+     */
+    public synchronized boolean prepare(String month) {
+        if (month == null || archived.contains(month)) {
+            return false;
+        }
+        if (live.contains(month)) {
+            return true;
+        }
+        if (live.size() >= MAX_ATTACHED) {
+            if (!warnedFull) {
+                warnedFull = true;
+                System.out.println("⚠️ " + MAX_ATTACHED + " live transaction partitions already; transactions for " +
+                                   month + " go to the main database. Archive older months to make room.");
+            }
+            return false;
+        }
+        try {
+            create(liveFile(month));
+        } catch (SQLException | IOException e) {
+            System.err.println("❌ Could not create the transaction partition for " + month + ": " + e.getMessage());
+            return false;
+        }
+        live = with(live, month);
+        version++;
+        return true;
+    }
+
+    private static void create(Path file) throws SQLException, IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        Files.deleteIfExists(partial);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + partial);
+             Statement stmt = conn.createStatement()) {
+            // auto_vacuum only takes effect if set before the first table is created.
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL;");
+            conn.setAutoCommit(false);
+            for (String sql : PARTITION_SCHEMA) {
+                stmt.execute(sql);
+            }
+            applyUpgrades(conn);
+            conn.commit();
+            conn.setAutoCommit(true);
+            stmt.execute("PRAGMA journal_mode = WAL;");
+        } catch (SQLException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Applies the PARTITION_UPGRADES a partition file is missing, in one transaction. */
+    private static void upgrade(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS + ";");
+            conn.setAutoCommit(false);
+            try {
+                applyUpgrades(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void applyUpgrades(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int applied;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+                applied = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (applied >= PARTITION_UPGRADES.size()) {
+                return;
+            }
+            for (String[] upgrade : PARTITION_UPGRADES.subList(applied, PARTITION_UPGRADES.size())) {
+                for (String sql : upgrade) {
+                    stmt.execute(sql);
+                }
+            }
+            stmt.execute("PRAGMA user_version = " + PARTITION_UPGRADES.size() + ";");
+        }
+    }
+
+    /**
+     * Session sync for pooled connections: attaches the live partitions, detaches the
+     * ones that are gone, and redefines the TEMP views over main and the attached months.
+     * Writable connections also get the GamesSold triggers for each attached month.
+     */
+    public void sync(Connection conn) throws SQLException {
+        List<String> wanted = new ArrayList<>();
+        for (String month : new TreeSet<>(live)) {
+            wanted.add(schemaOf(month));
+        }
+        List<String> attached = attachedSchemas(conn);
+        try (Statement stmt = conn.createStatement()) {
+            // Read-only pool connections have query_only on, which also refuses ATTACH and TEMP views.
+            boolean queryOnly = false;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA query_only;")) {
+                queryOnly = rs.next() && rs.getInt(1) == 1;
+            }
+            if (queryOnly) {
+                stmt.execute("PRAGMA query_only = OFF;");
+            }
+            try {
+                for (String schema : attached) {
+                    if (!wanted.contains(schema)) {
+                        for (String sql : dropGamesSoldTriggersSql(schema)) {
+                            stmt.execute(sql);
+                        }
+                        stmt.execute("DETACH DATABASE " + schema + ";");
+                    }
+                }
+                for (String schema : wanted) {
+                    if (!attached.contains(schema)) {
+                        try (PreparedStatement pstmt = conn.prepareStatement("ATTACH DATABASE ? AS " + schema + ";")) {
+                            pstmt.setString(1, liveFile(monthOfSchema(schema)).toString());
+                            pstmt.execute();
+                        }
+                    }
+                }
+                for (String sql : viewsSql(wanted)) {
+                    stmt.execute(sql);
+                }
+                if (!queryOnly) {
+                    for (String schema : wanted) {
+                        for (String sql : gamesSoldTriggersSql(schema)) {
+                            stmt.execute(sql);
+                        }
+                    }
+                }
+            } finally {
+                if (queryOnly) {
+                    stmt.execute("PRAGMA query_only = ON;");
+                }
+            }
+        }
+    }
+
+    private static List<String> viewsSql(List<String> partitions) {
+        List<String> sources = new ArrayList<>();
+        sources.add("main");
+        sources.addAll(partitions);
+        List<String> transactions = new ArrayList<>();
+        List<String> spending = new ArrayList<>();
+        List<String> totals = new ArrayList<>();
+        for (String schema : sources) {
+            transactions.add("SELECT TransactionID, UserID, GameID, PurchaseDate, TotalAmount FROM " +
+                             schema + ".playstoretransaction");
+            spending.add("SELECT UserID, TransactionCount, TotalSpent FROM " + schema + ".user_spending");
+            totals.add("SELECT AmountCount, TotalSpent, Deletions FROM " + schema + ".spending_totals WHERE ID = 1");
+        }
+        return List.of(
+                "DROP VIEW IF EXISTS temp.all_transactions;",
+                "DROP VIEW IF EXISTS temp.all_user_spending;",
+                "DROP VIEW IF EXISTS temp.all_spending_totals;",
+                "CREATE TEMP VIEW all_transactions AS " + String.join(" UNION ALL ", transactions) + ";",
+                "CREATE TEMP VIEW all_user_spending AS " +
+                "SELECT UserID, SUM(TransactionCount) AS TransactionCount, SUM(TotalSpent) AS TotalSpent FROM (" +
+                String.join(" UNION ALL ", spending) + ") GROUP BY UserID;",
+                "CREATE TEMP VIEW all_spending_totals AS " +
+                "SELECT 1 AS ID, SUM(AmountCount) AS AmountCount, SUM(TotalSpent) AS TotalSpent, " +
+                "SUM(Deletions) AS Deletions FROM (" +
+                String.join(" UNION ALL ", totals) + ");");
+    }
+
+    /**
+     * TEMP triggers that keep main's sellerinfo.GamesSold in step with one attached month,
+     * like schema migration 7 does for main's playstoretransaction. A trigger in a
+     * partition file could not reach main, so they live in each writing connection's TEMP
+     * schema; the unqualified names in their bodies resolve to main.
+     */
+    private static List<String> gamesSoldTriggersSql(String schema) {
+        String increment = "UPDATE sellerinfo SET GamesSold = COALESCE(GamesSold, 0) + 1 " +
+                           "WHERE SellerID = (SELECT SellerID FROM gamesinfo WHERE GameID = NEW.GameID); ";
+        String decrement = "UPDATE sellerinfo SET GamesSold = GamesSold - 1 " +
+                           "WHERE SellerID = (SELECT SellerID FROM gamesinfo WHERE GameID = OLD.GameID); ";
+        return List.of(
+                "CREATE TEMP TRIGGER IF NOT EXISTS trg_games_sold_after_insert_" + schema +
+                " AFTER INSERT ON " + schema + ".playstoretransaction BEGIN " + increment + "END;",
+                "CREATE TEMP TRIGGER IF NOT EXISTS trg_games_sold_after_delete_" + schema +
+                " AFTER DELETE ON " + schema + ".playstoretransaction BEGIN " + decrement + "END;",
+                "CREATE TEMP TRIGGER IF NOT EXISTS trg_games_sold_after_update_" + schema +
+                " AFTER UPDATE OF GameID ON " + schema + ".playstoretransaction WHEN OLD.GameID IS NOT NEW.GameID " +
+                "BEGIN " + decrement + increment + "END;");
+    }
+
+    private static List<String> dropGamesSoldTriggersSql(String schema) {
+        return List.of(
+                "DROP TRIGGER IF EXISTS temp.trg_games_sold_after_insert_" + schema + ";",
+                "DROP TRIGGER IF EXISTS temp.trg_games_sold_after_delete_" + schema + ";",
+                "DROP TRIGGER IF EXISTS temp.trg_games_sold_after_update_" + schema + ";");
+    }
+
+    /** "main" followed by the partition schemas attached to {@code conn}. */
+    public static List<String> schemas(Connection conn) throws SQLException {
+        List<String> schemas = new ArrayList<>();
+        schemas.add("main");
+        schemas.addAll(attachedSchemas(conn));
+        return schemas;
+    }
+
+    /** The partition schemas attached to {@code conn}, in attach order. */
+    private static List<String> attachedSchemas(Connection conn) throws SQLException {
+        List<String> schemas = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list;")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (name.startsWith(SCHEMA_PREFIX)) {
+                    schemas.add(name);
+                }
+            }
+        }
+        return schemas;
+    }
+
+    /**
+     * Inserts a transaction into its month's partition, or into main if it has none, and
+     * returns its TransactionID. Runs in a savepoint, so it joins the caller's transaction
+     * if there is one.
+     */
+    public long insert(Connection conn, int userID, int gameID, String purchaseDate, double totalAmount)
+            throws SQLException {
+        String month = monthOf(purchaseDate);
+        String schema = month == null ? null : schemaOf(month);
+        if (month == null || !live.contains(month) || !attachedSchemas(conn).contains(schema)) {
+            return insertRow(conn, "main", null, userID, gameID, purchaseDate, totalAmount);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SAVEPOINT partition_insert;");
+            try {
+                long transactionID = nextTransactionID(conn);
+                checkReferences(conn, userID, gameID);
+                insertRow(conn, schema, transactionID, userID, gameID, purchaseDate, totalAmount);
+                if (!live.contains(month)) {
+                    // Archived while this insert waited for the partition's write lock. The
+                    // archive copy may already be taken, so the row belongs in main.
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "DELETE FROM " + schema + ".playstoretransaction WHERE TransactionID = ?;")) {
+                        pstmt.setLong(1, transactionID);
+                        pstmt.executeUpdate();
+                    }
+                    insertRow(conn, "main", transactionID, userID, gameID, purchaseDate, totalAmount);
+                }
+                stmt.execute("RELEASE partition_insert;");
+                return transactionID;
+            } catch (SQLException | RuntimeException e) {
+                stmt.execute("ROLLBACK TO partition_insert;");
+                stmt.execute("RELEASE partition_insert;");
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch of transactions in the caller's transaction, each into its month's
+     * partition or into main, with one JDBC batch per file. A month's rows take a block of
+     * consecutive TransactionIDs from main's counter. Call prepare() for the batch's months
+     * before borrowing the connection, as for insert().
+     */
+    public void insertBatch(Connection conn, List<Transaction> transactions) throws SQLException {
+        List<String> attached = attachedSchemas(conn);
+        Map<String, List<Transaction>> bySchema = new LinkedHashMap<>();
+        for (Transaction t : transactions) {
+            String month = monthOf(t.purchaseDate());
+            String schema = month == null ? null : schemaOf(month);
+            boolean routed = month != null && live.contains(month) && attached.contains(schema);
+            bySchema.computeIfAbsent(routed ? schema : "main", k -> new ArrayList<>()).add(t);
+        }
+        for (Map.Entry<String, List<Transaction>> entry : bySchema.entrySet()) {
+            String schema = entry.getKey();
+            List<Transaction> rows = entry.getValue();
+            if (schema.equals("main")) {
+                insertRows(conn, "main", null, rows);
+                continue;
+            }
+            for (Transaction t : rows) {
+                checkReferences(conn, t.userID(), t.gameID());
+            }
+            long first = nextTransactionID(conn);
+            if (rows.size() > 1) {
+                try (PreparedStatement pstmt = conn.prepareStatement(RESERVE_TRANSACTION_IDS_SQL)) {
+                    pstmt.setLong(1, rows.size() - 1);
+                    pstmt.executeUpdate();
+                }
+            }
+            insertRows(conn, schema, first, rows);
+            if (!live.contains(monthOfSchema(schema))) {
+                // Archived while waiting for the partition's write lock; see insert().
+                try (Statement stmt = conn.createStatement()) {
+                    String range = " WHERE TransactionID BETWEEN " + first + " AND " + (first + rows.size() - 1) + ";";
+                    stmt.executeUpdate("INSERT INTO main.playstoretransaction " +
+                                       "(TransactionID, UserID, GameID, PurchaseDate, TotalAmount) " +
+                                       "SELECT TransactionID, UserID, GameID, PurchaseDate, TotalAmount FROM " +
+                                       schema + ".playstoretransaction" + range);
+                    stmt.executeUpdate("DELETE FROM " + schema + ".playstoretransaction" + range);
+                }
+            }
+        }
+    }
+
+    /** Batch-inserts rows into one file, numbered from {@code firstID}, or by AUTOINCREMENT if it is null. */
+    private static void insertRows(Connection conn, String schema, Long firstID, List<Transaction> rows)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO " + schema + ".playstoretransaction " +
+                "(TransactionID, UserID, GameID, PurchaseDate, TotalAmount) VALUES (?, ?, ?, ?, ?);")) {
+            for (int i = 0; i < rows.size(); i++) {
+                Transaction t = rows.get(i);
+                pstmt.setObject(1, firstID == null ? null : firstID + i);
+                pstmt.setInt(2, t.userID());
+                pstmt.setInt(3, t.gameID());
+                pstmt.setString(4, t.purchaseDate());
+                pstmt.setDouble(5, t.totalAmount());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static long insertRow(Connection conn, String schema, Long transactionID, int userID, int gameID,
+                                  String purchaseDate, double totalAmount) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO " + schema + ".playstoretransaction " +
+                "(TransactionID, UserID, GameID, PurchaseDate, TotalAmount) VALUES (?, ?, ?, ?, ?) " +
+                "RETURNING TransactionID;")) {
+            pstmt.setObject(1, transactionID);
+            pstmt.setInt(2, userID);
+            pstmt.setInt(3, gameID);
+            pstmt.setString(4, purchaseDate);
+            pstmt.setDouble(5, totalAmount);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /** Takes the next TransactionID from main's AUTOINCREMENT counter. */
+    private static long nextTransactionID(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(NEXT_TRANSACTION_ID_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(FIRST_TRANSACTION_ID_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void checkReferences(Connection conn, int userID, int gameID) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(REFERENCES_EXIST_SQL)) {
+            pstmt.setInt(1, userID);
+            pstmt.setInt(2, gameID);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    throw new SQLException("No user with ID " + userID);
+                }
+                if (!rs.getBoolean(2)) {
+                    throw new SQLException("No game with ID " + gameID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a user, their transactions in main (by ON DELETE CASCADE) and their rows in
+     * every attached month, in one savepoint. Returns the number of users deleted.
+     */
+    public int deleteUser(Connection conn, int userID) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SAVEPOINT partition_delete_user;");
+            try {
+                int deleted;
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM main.users WHERE UserID = ?;")) {
+                    pstmt.setInt(1, userID);
+                    deleted = pstmt.executeUpdate();
+                }
+                for (String schema : attachedSchemas(conn)) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "DELETE FROM " + schema + ".playstoretransaction WHERE UserID = ?;")) {
+                        pstmt.setInt(1, userID);
+                        pstmt.executeUpdate();
+                    }
+                }
+                stmt.execute("RELEASE partition_delete_user;");
+                return deleted;
+            } catch (SQLException | RuntimeException e) {
+                stmt.execute("ROLLBACK TO partition_delete_user;");
+                stmt.execute("RELEASE partition_delete_user;");
+                throw e;
+            }
+        }
+    }
+
+    /** Live and archived partitions, by month, with their row counts and file sizes. */
+    public List<Partition> list() throws SQLException, IOException {
+        TreeSet<String> months = new TreeSet<>(live);
+        months.addAll(archived);
+        List<Partition> partitions = new ArrayList<>();
+        for (String month : months) {
+            boolean isArchived = !live.contains(month);
+            Path file = isArchived ? archiveFile(month) : liveFile(month);
+            if (Files.exists(file)) {
+                partitions.add(new Partition(month, file, isArchived, countRows(file), Files.size(file)));
+            }
+        }
+        return partitions;
+    }
+
+    private static long countRows(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT AmountCount FROM spending_totals WHERE ID = 1;")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Backs up every month attached to {@code conn} into {@code target} with
+     * StorageMaintenance.backup, one file per month under its live file name, so the
+     * directory can serve as the partition directory of the main backup. Files there for
+     * months no longer live are removed. Archived months are not copied.
+     */
+    public static List<StorageMaintenance.Backup> backup(Connection conn, Path target, int pagesPerStep,
+                                                         StorageMaintenance.StepListener listener)
+            throws SQLException, IOException {
+        Files.createDirectories(target);
+        List<String> schemas = attachedSchemas(conn);
+        Set<String> months = new TreeSet<>();
+        List<StorageMaintenance.Backup> backups = new ArrayList<>();
+        for (String schema : schemas) {
+            String month = monthOfSchema(schema);
+            months.add(month);
+            backups.add(StorageMaintenance.backup(conn, schema, target.resolve("transactions-" + month + ".db"),
+                    pagesPerStep, listener));
+        }
+        for (String stale : months(target)) {
+            if (!months.contains(stale)) {
+                Files.delete(target.resolve("transactions-" + stale + ".db"));
+            }
+        }
+        return backups;
+    }
+
+    /**
+     * Writes a compacted copy of every month attached to {@code conn} into {@code target}
+     * with VACUUM INTO, under the live file names. {@code target} must not hold any
+     * partition files yet. Returns the files written.
+     */
+    public static List<Path> snapshot(Connection conn, Path target) throws SQLException, IOException {
+        if (!months(target).isEmpty()) {
+            throw new IOException(target + " already holds transaction partitions");
+        }
+        Files.createDirectories(target);
+        List<Path> files = new ArrayList<>();
+        for (String schema : attachedSchemas(conn)) {
+            Path file = target.resolve("transactions-" + monthOfSchema(schema) + ".db");
+            StorageMaintenance.snapshot(conn, schema, file);
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Moves a month out of the hot path: stops routing to it, waits for inserts already
+     * routed there to commit, writes a compacted copy to the archive directory, checks it,
+     * and deletes the live file once every connection in pools has detached it. If any
+     * step fails, including the delete, the month stays live and the copy is removed.
+     * Rows for the month that arrive later go to main.
+     */
+    public Path archive(String month, List<ConnectionPool> pools) throws SQLException, IOException {
+        synchronized (this) {
+            if (!live.contains(month)) {
+                throw new IllegalArgumentException("No live transaction partition for " + month);
+            }
+            live = without(live, month);
+            archived = with(archived, month);
+            warnedFull = false;
+            version++;
+        }
+        Path file = liveFile(month);
+        Path target = archiveFile(month);
+        try {
+            Files.deleteIfExists(target);
+            long rows;
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS + ";");
+                // Taking the write lock waits out every insert routed here before the switch.
+                stmt.execute("BEGIN IMMEDIATE;");
+                stmt.execute("COMMIT;");
+                StorageMaintenance.snapshot(conn, target);
+                rows = countRows(file);
+            }
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + target);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = DELETE;");
+            }
+            long copied = countRows(target);
+            if (copied != rows) {
+                throw new IOException("Archive copy of " + month + " has " + copied + " transactions, live file has " + rows);
+            }
+            // Idle connections still have the file attached, and an open file cannot be deleted on Windows.
+            for (ConnectionPool pool : pools) {
+                pool.syncSessions();
+            }
+            Files.delete(file);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            synchronized (this) {
+                archived = without(archived, month);
+                live = with(live, month);
+                version++;
+            }
+            throw e;
+        }
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-wal"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + "-shm"));
+        return target;
+    }
+
+    /** Moves an archived month back into the live directory and attaches it again. */
+    public synchronized void restore(String month) throws SQLException, IOException {
+        if (!archived.contains(month)) {
+            throw new IllegalArgumentException("No archived transaction partition for " + month);
+        }
+        if (live.size() >= MAX_ATTACHED) {
+            throw new IllegalStateException(MAX_ATTACHED + " live transaction partitions already; archive one first");
+        }
+        Path file = liveFile(month);
+        Files.move(archiveFile(month), file, StandardCopyOption.ATOMIC_MOVE);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL;");
+        }
+        upgrade(file);
+        archived = without(archived, month);
+        live = with(live, month);
+        version++;
+    }
+
+    private static Set<String> with(Set<String> months, String month) {
+        TreeSet<String> copy = new TreeSet<>(months);
+        copy.add(month);
+        return Set.copyOf(copy);
+    }
+
+    private static Set<String> without(Set<String> months, String month) {
+        TreeSet<String> copy = new TreeSet<>(months);
+        copy.remove(month);
+        return Set.copyOf(copy);
+    }
+
+    /**
+     * Users with their transactions in (UserID, TransactionID) order, across main and every
+     * partition attached to the connection: the partitioned form of a users LEFT JOIN
+     * playstoretransaction. It walks the users table and one (UserID, TransactionID) index
+     * scan per file side by side, always taking the smallest key, so nothing is sorted or
+     * held in memory. Starts after (afterUser, afterTransaction), the key of a page's last
+     * row (0, 0 for the start). Owns the connection and closes it when it runs out of rows.
+     */
+    public static final class UserTransactionMerge extends Spliterators.AbstractSpliterator<UserTransaction> {
+        private static final String USERS_SQL =
+                "SELECT UserID, Username FROM main.users WHERE UserID >= ? ORDER BY UserID;";
+
+        /** The current row of one file's transactions. */
+        private static final class Source {
+            final PreparedStatement pstmt;
+            final ResultSet rs;
+            int userID;
+            int transactionID;
+
+            Source(PreparedStatement pstmt, ResultSet rs) {
+                this.pstmt = pstmt;
+                this.rs = rs;
+            }
+
+            boolean advance() throws SQLException {
+                if (!rs.next()) {
+                    return false;
+                }
+                userID = rs.getInt(1);
+                transactionID = rs.getInt(2);
+                return true;
+            }
+        }
+
+        private final Connection conn;
+        private final int afterUser;
+        private final MergeListener listener;
+        private final List<AutoCloseable> resources = new ArrayList<>();
+        private final PriorityQueue<Source> sources = new PriorityQueue<>(
+                Comparator.<Source>comparingInt(s -> s.userID).thenComparingInt(s -> s.transactionID));
+        private final ResultSet users;
+        private boolean onUser;
+        private int userID;
+        private String username;
+        private boolean userHasRows;
+        private long rows;
+        private boolean failed;
+        private boolean closed;
+
+        public UserTransactionMerge(Connection conn, int afterUser, int afterTransaction, int fetchSize,
+                                    MergeListener listener) throws SQLException {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.afterUser = afterUser;
+            this.listener = listener;
+            try {
+                PreparedStatement usersStmt = conn.prepareStatement(USERS_SQL);
+                resources.add(usersStmt);
+                usersStmt.setFetchSize(fetchSize);
+                usersStmt.setInt(1, afterUser);
+                users = usersStmt.executeQuery();
+                resources.add(users);
+                List<String> schemas = new ArrayList<>();
+                schemas.add("main");
+                schemas.addAll(attachedSchemas(conn));
+                for (String schema : schemas) {
+                    PreparedStatement pstmt = conn.prepareStatement(
+                            "SELECT UserID, TransactionID, PurchaseDate, TotalAmount FROM " + schema +
+                            ".playstoretransaction WHERE (UserID, TransactionID) > (?, ?) " +
+                            "ORDER BY UserID, TransactionID;");
+                    resources.add(pstmt);
+                    pstmt.setFetchSize(fetchSize);
+                    pstmt.setInt(1, afterUser);
+                    pstmt.setInt(2, afterTransaction);
+                    Source source = new Source(pstmt, pstmt.executeQuery());
+                    resources.add(source.rs);
+                    if (source.advance()) {
+                        sources.add(source);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                failed = true;
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super UserTransaction> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                UserTransaction row = next();
+                if (row == null) {
+                    close();
+                    return false;
+                }
+                action.accept(row);
+                rows++;
+                return true;
+            } catch (SQLException e) {
+                failed = true;
+                close();
+                throw new DatabaseException("Reading query results failed", e);
+            }
+        }
+
+        private UserTransaction next() throws SQLException {
+            while (true) {
+                if (!onUser) {
+                    if (!users.next()) {
+                        return null;
+                    }
+                    onUser = true;
+                    userID = users.getInt(1);
+                    username = users.getString(2);
+                    // The page before ended inside this user, so it already had its rows or its null row.
+                    userHasRows = userID == afterUser;
+                }
+                // Skip rows whose user no longer exists; the LEFT JOIN drops them too.
+                while (!sources.isEmpty() && sources.peek().userID < userID) {
+                    Source orphan = sources.poll();
+                    if (orphan.advance()) {
+                        sources.add(orphan);
+                    }
+                }
+                Source source = sources.peek();
+                if (source != null && source.userID == userID) {
+                    sources.poll();
+                    UserTransaction row = new UserTransaction(userID, username, source.transactionID,
+                            source.rs.getString(3), source.rs.getDouble(4));
+                    if (source.advance()) {
+                        sources.add(source);
+                    }
+                    userHasRows = true;
+                    return row;
+                }
+                onUser = false;
+                if (!userHasRows) {
+                    return new UserTransaction(userID, username, null, null, null);
+                }
+            }
+        }
+
+        public void close() {
+            if (!closed) {
+                closed = true;
+                for (int i = resources.size() - 1; i >= 0; i--) {
+                    try {
+                        resources.get(i).close();
+                    } catch (Exception e) {
+                        System.err.println("Error closing " + resources.get(i) + ": " + e.getMessage());
+                    }
+                }
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing " + conn + ": " + e.getMessage());
+                }
+                listener.closed(rows, !failed);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** A row of users as returned by the listing queries (the password is never read back). */
+public record User(int userID, String username, String email) {
+
+    static User from(ResultSet rs) throws SQLException {
+        return new User(rs.getInt("UserID"), rs.getString("Username"), rs.getString("Email"));
+    }
+}
@@ -0,0 +1,10 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** A user's total spend across all of their transactions. */
+public record UserSpending(int userID, String username, double totalSpent) {
+
+    static UserSpending from(ResultSet rs) throws SQLException {
+        return new UserSpending(rs.getInt("UserID"), rs.getString("Username"), rs.getDouble("TotalSpent"));
+    }
+}
@@ -0,0 +1,19 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A user joined with one of their transactions. The transaction fields are null
+ * for users who have never bought anything (LEFT JOIN).
+ */
+public record UserTransaction(int userID, String username, Integer transactionID, String purchaseDate,
+                              Double totalAmount) {
+
+    static UserTransaction from(ResultSet rs) throws SQLException {
+        int transactionID = rs.getInt("TransactionID");
+        boolean hasTransaction = !rs.wasNull();
+        return new UserTransaction(rs.getInt("UserID"), rs.getString("Username"),
+                hasTransaction ? transactionID : null,
+                rs.getString("PurchaseDate"),
+                hasTransaction ? rs.getDouble("TotalAmount") : null);
+    }
+}
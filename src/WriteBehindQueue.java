@@ -0,0 +1,194 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of database mutations drained by a single writer thread.
+ *
+ * SQLite only ever allows one writer, so instead of many threads contending for
+ * the write lock, callers enqueue work and the writer applies whatever has
+ * accumulated in one transaction (group commit). Each mutation runs under its own
+ * savepoint, so one failing insert does not take the rest of its group down.
+ * Futures complete only after the group's COMMIT has returned, and the group commits
+ * with synchronous=FULL whatever the connection's profile says: under NORMAL a WAL
+ * commit can still be lost on power failure. FULL syncs the WAL once per group, so
+ * the cost is shared by every write in it.
+ *
+ * submit() blocks while the queue is full, which pushes back on producers.
+ * close() stops accepting work and waits for everything queued to be written.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    /** A unit of write work applied on the writer's connection. */
+    @FunctionalInterface
+    public interface Mutation {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Pending(Mutation mutation, CompletableFuture<Void> done) {
+    }
+
+    private static final long POLL_MILLIS = 100;
+    private static final int SYNCHRONOUS_FULL = 2;
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatch;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    public WriteBehindQueue(ConnectionPool pool, int capacity, int maxBatch) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::drainLoop, "sqlite-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Enqueues a mutation, blocking while the queue is full.
+     * The returned future completes once the mutation has been committed durably.
+     */
+    public CompletableFuture<Void> submit(Mutation mutation) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (closed) {
+            done.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+            return done;
+        }
+        Pending pending = new Pending(mutation, done);
+        try {
+            queue.put(pending);
+            submitted.incrementAndGet();
+            // close() may have drained the queue for the last time between the check above and
+            // the put. Whoever removes the entry completes it: the writer, close(), or us.
+            if (closed && queue.remove(pending)) {
+                done.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeGroup(batch);
+            } catch (InterruptedException e) {
+                // Shutdown is signalled through the closed flag; keep draining.
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeGroup(List<Pending> batch) {
+        List<Pending> applied = new ArrayList<>(batch.size());
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            // synchronous cannot change inside a transaction, so it is raised before the group starts.
+            int synchronous;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA synchronous;")) {
+                synchronous = rs.next() ? rs.getInt(1) : SYNCHRONOUS_FULL;
+            }
+            if (synchronous < SYNCHRONOUS_FULL) {
+                stmt.execute("PRAGMA synchronous = FULL;");
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (Pending pending : batch) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        pending.mutation().apply(conn);
+                        conn.releaseSavepoint(savepoint);
+                        applied.add(pending);
+                    } catch (SQLException | RuntimeException e) {
+                        conn.rollback(savepoint);
+                        failed.incrementAndGet();
+                        pending.done().completeExceptionally(e);
+                    }
+                }
+                conn.commit();
+                commits.incrementAndGet();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                if (synchronous < SYNCHRONOUS_FULL) {
+                    stmt.execute("PRAGMA synchronous = " + synchronous + ";");
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Fails the applied mutations whose commit was lost, and anything the group never got to,
+            // e.g. when no connection could be borrowed.
+            for (Pending pending : batch) {
+                if (pending.done().completeExceptionally(e)) {
+                    failed.incrementAndGet();
+                }
+            }
+            return;
+        }
+        written.addAndGet(applied.size());
+        applied.forEach(p -> p.done().complete(null));
+    }
+
+    /** Stops accepting mutations and blocks until everything already queued is committed. */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything that raced past the closed check after the writer exited.
+        Pending late;
+        while ((late = queue.poll()) != null) {
+            late.done().completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(queue.size(), queue.size() + queue.remainingCapacity(),
+                submitted.get(), written.get(), failed.get(), commits.get());
+    }
+
+    /** Queue depth and group-commit counters. */
+    public record Stats(int depth, int capacity, long submitted, long written, long failed, long commits) {
+
+        public double averageGroupSize() {
+            return commits == 0 ? 0 : (double) written / commits;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Write-behind: %d/%d queued | submitted: %d | written: %d | failed: %d | " +
+                                 "commits: %d (avg %.1f writes/commit)",
+                    depth, capacity, submitted, written, failed, commits, averageGroupSize());
+        }
+    }
+}